@@ -0,0 +1,193 @@
+package adbTools;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+@Timeout(value = 10, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+class BulkPullTest {
+	private static final int FILE_SIZE = 100 * 1024;
+
+	@TempDir
+	Path local;
+
+	private FakeServer server;
+	private int previousPort;
+	private BulkPull pull;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = new FakeServer();
+		previousPort = AdbConnection.port;
+		AdbConnection.port = server.getPort();
+
+		pull = new BulkPull(new Device("fake-1", "device", null, 0, "adb"));
+		pull.setConnections(2);
+		pull.setWindow(4);
+	}
+
+	@AfterEach
+	void stopServer() throws IOException {
+		server.close();
+		AdbConnection.port = previousPort;
+	}
+
+	private static byte[] content(String remote) {
+		byte[] data = new byte[FILE_SIZE];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (remote.hashCode() + i);
+		}
+		return data;
+	}
+
+	private static List<AndroidFile> files(int count) {
+		List<AndroidFile> files = new ArrayList<AndroidFile>();
+		for (int i = 0; i < count; i++) {
+			files.add(new AndroidFile("/sdcard/file" + i));
+		}
+		return files;
+	}
+
+	@Test
+	void disconnectMidFileIsRetried() throws Exception {
+		server.cuts.put("/sdcard/file3", new AtomicInteger(1));
+
+		pull.pull(files(8), local.toString());
+
+		assertEquals(Map.of(), pull.getFailures());
+		assertEquals(8, pull.getFilesPulled());
+		for (int i = 0; i < 8; i++) {
+			String remote = "/sdcard/file" + i;
+			assertArrayEquals(content(remote), Files.readAllBytes(local.resolve("file" + i)), remote);
+		}
+	}
+
+	@Test
+	void repeatedDisconnectFailsOnlyThatFile() throws Exception {
+		server.cuts.put("/sdcard/file3", new AtomicInteger(Integer.MAX_VALUE));
+
+		pull.pull(files(8), local.toString());
+
+		assertEquals(1, pull.getFailures().size());
+		assertNotNull(pull.getFailures().get("/sdcard/file3"));
+		assertEquals(7, pull.getFilesPulled());
+		assertFalse(new File(local.toFile(), "file3").exists());
+		assertTrue(new File(local.toFile(), "file7").exists());
+	}
+
+	/**
+	 * An ADB server whose device answers sync RECV requests, dropping the
+	 * connection after the first chunk of the files in cuts
+	 */
+	private static class FakeServer implements Closeable {
+		private Map<String, AtomicInteger> cuts = new ConcurrentHashMap<String, AtomicInteger>();
+		private ServerSocket socket;
+
+		private FakeServer() throws IOException {
+			socket = new ServerSocket(0, 50, InetAddress.getByName(AdbConnection.HOST));
+			Thread acceptor = new Thread(() -> {
+				while (!socket.isClosed()) {
+					try {
+						Socket client = socket.accept();
+						Thread handler = new Thread(() -> handle(client));
+						handler.setDaemon(true);
+						handler.start();
+					} catch (IOException e) {
+						// Closed by the test
+					}
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		private int getPort() {
+			return socket.getLocalPort();
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+
+		private void handle(Socket client) {
+			try (client) {
+				DataInputStream in = new DataInputStream(client.getInputStream());
+				OutputStream out = client.getOutputStream();
+				readRequest(in);
+				out.write("OKAY".getBytes(StandardCharsets.US_ASCII));
+				if (!readRequest(in).equals("sync:")) {
+					return;
+				}
+				out.write("OKAY".getBytes(StandardCharsets.US_ASCII));
+
+				while (true) {
+					byte[] id = new byte[4];
+					in.readFully(id);
+					byte[] path = new byte[Integer.reverseBytes(in.readInt())];
+					in.readFully(path);
+					if (!new String(id, StandardCharsets.US_ASCII).equals("RECV")) {
+						return;
+					}
+					String remote = new String(path, StandardCharsets.UTF_8);
+					byte[] data = content(remote);
+					AtomicInteger cut = cuts.get(remote);
+					for (int offset = 0; offset < data.length; offset += 64 * 1024) {
+						int length = Math.min(64 * 1024, data.length - offset);
+						write(out, "DATA", length);
+						out.write(data, offset, length);
+						if (cut != null && cut.getAndDecrement() > 0) {
+							out.flush();
+							return;
+						}
+					}
+					write(out, "DONE", 0);
+					out.flush();
+				}
+			} catch (IOException e) {
+				// The client went away
+			}
+		}
+
+		private static String readRequest(DataInputStream in) throws IOException {
+			byte[] length = new byte[4];
+			in.readFully(length);
+			byte[] request = new byte[Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16)];
+			in.readFully(request);
+			return new String(request, StandardCharsets.UTF_8);
+		}
+
+		private static void write(OutputStream out, String id, int value) throws IOException {
+			out.write(id.getBytes(StandardCharsets.US_ASCII));
+			out.write(value & 0xff);
+			out.write((value >> 8) & 0xff);
+			out.write((value >> 16) & 0xff);
+			out.write((value >> 24) & 0xff);
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package adbTools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionManagerTest {
+	private FakeServer server;
+	private int previousPort;
+	private Transport previousTransport;
+	private ConnectionManager manager;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = new FakeServer();
+		previousPort = AdbConnection.port;
+		AdbConnection.port = server.getPort();
+		previousTransport = Command.getTransport();
+		Command.setTransport(server);
+
+		manager = new ConnectionManager(new PlatformTools());
+		manager.setTimeout(1000);
+		manager.setBackoff(100, 400);
+	}
+
+	@AfterEach
+	void stopServer() throws IOException {
+		manager.close();
+		server.close();
+		AdbConnection.port = previousPort;
+		Command.setTransport(previousTransport);
+	}
+
+	private static void waitFor(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	void connectAllReturnsReachableDevices() throws InterruptedException {
+		server.reachable.addAll(Arrays.asList("10.0.0.1:5555", "10.0.0.2:5555", "10.0.0.3:5000"));
+
+		List<Device> devices = manager.connectAll(Arrays.asList("10.0.0.1", "10.0.0.2:5555", "10.0.0.3:5000",
+				"10.0.0.4"));
+
+		List<String> serials = new ArrayList<String>();
+		for (int i = 0; i < devices.size(); i++) {
+			serials.add(devices.get(i).getSerial());
+		}
+		assertEquals(Arrays.asList("10.0.0.1:5555", "10.0.0.2:5555", "10.0.0.3:5000"), serials);
+		assertEquals(ConnectionManager.STATE_CONNECTED, manager.getState("10.0.0.1"));
+		assertEquals(ConnectionManager.STATE_WAITING, manager.getState("10.0.0.4"));
+		assertTrue(manager.getLastError("10.0.0.4").startsWith("failed to connect"));
+		assertEquals(0, manager.getReconnectCount());
+	}
+
+	@Test
+	void failedConnectionsBackOff() throws InterruptedException {
+		manager.add("10.0.0.1");
+		waitFor(() -> server.attempts("10.0.0.1:5555").size() >= 5, 5000);
+		assertEquals(ConnectionManager.STATE_WAITING, manager.getState("10.0.0.1"));
+
+		// Each delay is jittered between half and all of 100, 200, 400 then 400 ms
+		List<Long> attempts = server.attempts("10.0.0.1:5555");
+		long[] least = { 50, 100, 200, 200 };
+		for (int i = 0; i < least.length; i++) {
+			long gap = TimeUnit.NANOSECONDS.toMillis(attempts.get(i + 1) - attempts.get(i));
+			assertTrue(gap >= least[i], "Retry " + (i + 1) + " after " + gap + " ms");
+		}
+
+		server.reachable.add("10.0.0.1:5555");
+		waitFor(() -> ConnectionManager.STATE_CONNECTED.equals(manager.getState("10.0.0.1")), 2000);
+		assertEquals(null, manager.getLastError("10.0.0.1"));
+		assertEquals(0, manager.getReconnectCount());
+	}
+
+	@Test
+	void failedProbeReconnects() throws InterruptedException {
+		server.reachable.add("10.0.0.1:5555");
+		manager.setKeepAlive(1);
+		assertEquals(1, manager.connectAll(Arrays.asList("10.0.0.1")).size());
+
+		server.failingProbes.add("10.0.0.1:5555");
+		waitFor(() -> manager.getReconnectCount() == 1, 5000);
+
+		assertEquals(ConnectionManager.STATE_CONNECTED, manager.getState("10.0.0.1"));
+		assertTrue(server.disconnects.contains("10.0.0.1:5555"));
+		assertEquals(2, server.attempts("10.0.0.1:5555").size());
+		assertTrue(server.connected.contains("10.0.0.1:5555"));
+	}
+
+	@Test
+	void closeReleasesConnectAll() throws InterruptedException {
+		server.reachable.addAll(Arrays.asList("10.0.0.1:5555", "10.0.0.2:5555", "10.0.0.3:5555"));
+		server.holdConnects = new CountDownLatch(1);
+		manager.setParallelism(1);
+
+		CountDownLatch returned = new CountDownLatch(1);
+		Thread waiting = new Thread(() -> {
+			try {
+				manager.connectAll(Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3"));
+				returned.countDown();
+			} catch (InterruptedException e) {
+				// The test fails on the latch below
+			}
+		});
+		waiting.setDaemon(true);
+		waiting.start();
+		waitFor(() -> server.attempts("10.0.0.1:5555").size() == 1, 2000);
+
+		manager.close();
+		assertTrue(returned.await(2, TimeUnit.SECONDS));
+		server.holdConnects.countDown();
+		assertFalse(server.attempts("10.0.0.2:5555").size() > 0);
+	}
+
+	/**
+	 * An ADB server that connects to the addresses in reachable, and a transport
+	 * that lists them for "adb devices -l"
+	 */
+	private static class FakeServer implements Transport, Closeable {
+		private Set<String> reachable = ConcurrentHashMap.newKeySet();
+		private Set<String> connected = ConcurrentHashMap.newKeySet();
+		private Set<String> failingProbes = ConcurrentHashMap.newKeySet();
+		private List<String> disconnects = new CopyOnWriteArrayList<String>();
+		private Map<String, List<Long>> attempts = new ConcurrentHashMap<String, List<Long>>();
+		private volatile CountDownLatch holdConnects = new CountDownLatch(0);
+		private ServerSocket socket;
+
+		private FakeServer() throws IOException {
+			socket = new ServerSocket(0, 50, InetAddress.getByName(AdbConnection.HOST));
+			Thread acceptor = new Thread(() -> {
+				while (!socket.isClosed()) {
+					try {
+						Socket client = socket.accept();
+						Thread handler = new Thread(() -> handle(client));
+						handler.setDaemon(true);
+						handler.start();
+					} catch (IOException e) {
+						// Closed by the test
+					}
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		private int getPort() {
+			return socket.getLocalPort();
+		}
+
+		private List<Long> attempts(String address) {
+			return attempts.computeIfAbsent(address, key -> new CopyOnWriteArrayList<Long>());
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+
+		@Override
+		public Process start(Command command) {
+			StringBuilder output = new StringBuilder();
+			if (command.getArgs().contains("devices")) {
+				output.append("List of devices attached\n");
+				List<String> serials = new ArrayList<String>(connected);
+				serials.sort(null);
+				for (int i = 0; i < serials.size(); i++) {
+					output.append(serials.get(i)).append("          device product:fake model:Fake device:fake")
+							.append(" transport_id:").append(i + 1).append('\n');
+				}
+			}
+			return new FakeProcess(output.toString());
+		}
+
+		private void handle(Socket client) {
+			try (client) {
+				DataInputStream in = new DataInputStream(client.getInputStream());
+				OutputStream out = client.getOutputStream();
+				String request = read(in);
+				if (request.startsWith("host:connect:")) {
+					String address = request.substring("host:connect:".length());
+					attempts(address).add(System.nanoTime());
+					holdConnects.await();
+					if (reachable.contains(address)) {
+						connected.add(address);
+						reply(out, "OKAY", "connected to " + address);
+					} else {
+						reply(out, "OKAY", "failed to connect to '" + address + "': Connection refused");
+					}
+				} else if (request.startsWith("host:disconnect:")) {
+					String address = request.substring("host:disconnect:".length());
+					disconnects.add(address);
+					connected.remove(address);
+					reply(out, "OKAY", "disconnected " + address);
+				} else if (request.startsWith("host-serial:") && request.endsWith(":get-state")) {
+					String serial = request.substring("host-serial:".length(), request.length() - ":get-state".length());
+					if (connected.contains(serial)) {
+						reply(out, "OKAY", "device");
+					} else {
+						reply(out, "FAIL", "device '" + serial + "' not found");
+					}
+				} else if (request.startsWith("host:transport:")) {
+					String serial = request.substring("host:transport:".length());
+					if (!connected.contains(serial) || failingProbes.remove(serial)) {
+						reply(out, "FAIL", "device offline");
+						return;
+					}
+					out.write("OKAY".getBytes(StandardCharsets.US_ASCII));
+					read(in);
+					out.write("OKAY\n".getBytes(StandardCharsets.US_ASCII));
+				} else {
+					reply(out, "FAIL", "unknown request");
+				}
+			} catch (IOException | InterruptedException e) {
+				// The client went away
+			}
+		}
+
+		private static String read(DataInputStream in) throws IOException {
+			byte[] length = new byte[4];
+			in.readFully(length);
+			byte[] request = new byte[Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16)];
+			in.readFully(request);
+			return new String(request, StandardCharsets.UTF_8);
+		}
+
+		private static void reply(OutputStream out, String status, String message) throws IOException {
+			byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+			out.write((status + String.format("%04x", payload.length)).getBytes(StandardCharsets.US_ASCII));
+			out.write(payload);
+			out.flush();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package adbTools;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A finished process that printed the given output, for stub transports
+ */
+class FakeProcess extends Process {
+	private InputStream stdout;
+
+	FakeProcess(String output) {
+		stdout = new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return OutputStream.nullOutputStream();
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return stdout;
+	}
+
+	@Override
+	public InputStream getErrorStream() {
+		return InputStream.nullInputStream();
+	}
+
+	@Override
+	public int waitFor() {
+		return 0;
+	}
+
+	@Override
+	public int exitValue() {
+		return 0;
+	}
+
+	@Override
+	public void destroy() {
+	}
+}
@@ -0,0 +1,120 @@
+package adbTools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class InstrumentationParserTest {
+	private List<TestResult> started = new ArrayList<TestResult>();
+	private List<TestResult> ended = new ArrayList<TestResult>();
+	private List<String> failures = new ArrayList<String>();
+
+	private InstrumentationListener listener = new InstrumentationListener() {
+		public void testStarted(TestResult result) {
+			started.add(result);
+		}
+
+		public void testEnded(TestResult result) {
+			ended.add(result);
+		}
+
+		public void runFailed(Device device, int shardIndex, String message) {
+			failures.add(message);
+		}
+	};
+
+	private InstrumentationParser parse(String... lines) {
+		InstrumentationParser parser = new InstrumentationParser(null, 0, 0, listener);
+		for (int i = 0; i < lines.length; i++) {
+			parser.parseLine(lines[i]);
+		}
+		parser.finish();
+		return parser;
+	}
+
+	private static String[] status(String className, String test, int code, String... extra) {
+		List<String> lines = new ArrayList<String>();
+		lines.add("INSTRUMENTATION_STATUS: class=" + className);
+		lines.add("INSTRUMENTATION_STATUS: test=" + test);
+		for (int i = 0; i < extra.length; i++) {
+			lines.add(extra[i]);
+		}
+		lines.add("INSTRUMENTATION_STATUS_CODE: " + code);
+		return lines.toArray(new String[0]);
+	}
+
+	private static String[] join(String[]... parts) {
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < parts.length; i++) {
+			for (int j = 0; j < parts[i].length; j++) {
+				lines.add(parts[i][j]);
+			}
+		}
+		return lines.toArray(new String[0]);
+	}
+
+	private static final String[] RUN_COMPLETE = { "INSTRUMENTATION_RESULT: stream=", "OK (2 tests)",
+			"INSTRUMENTATION_CODE: -1" };
+
+	@Test
+	void passingAndFailingTests() {
+		InstrumentationParser parser = parse(join(status("com.a.FooTest", "one", 1),
+				status("com.a.FooTest", "one", 0), status("com.a.FooTest", "two", 1),
+				status("com.a.FooTest", "two", -2, "INSTRUMENTATION_STATUS: stack=java.lang.AssertionError",
+						"\tat com.a.FooTest.two(FooTest.java:12)"),
+				RUN_COMPLETE));
+
+		assertEquals(2, started.size());
+		assertEquals(2, ended.size());
+		assertFalse(ended.get(0).isFailed());
+		assertTrue(ended.get(1).isFailed());
+		assertEquals("java.lang.AssertionError\n\tat com.a.FooTest.two(FooTest.java:12)", ended.get(1).getStack());
+		assertTrue(parser.isRunComplete());
+		assertTrue(failures.isEmpty());
+	}
+
+	@Test
+	void interimStatusDoesNotEndTest() {
+		parse(join(status("com.a.Bench", "scroll", 1),
+				status("com.a.Bench", "scroll", 2, "INSTRUMENTATION_STATUS: frame_time_p50=8"),
+				status("com.a.Bench", "scroll", 2, "INSTRUMENTATION_STATUS: frame_time_p90=12"),
+				status("com.a.Bench", "scroll", 0), RUN_COMPLETE));
+
+		assertEquals(1, ended.size());
+		assertEquals(TestResult.STATUS_OK, ended.get(0).getStatus());
+	}
+
+	@Test
+	void unknownStatusDoesNotEndTest() {
+		parse(join(status("com.a.FooTest", "one", 1), status("com.a.FooTest", "one", 7),
+				status("com.a.FooTest", "one", -3), RUN_COMPLETE));
+
+		assertEquals(1, ended.size());
+		assertEquals(TestResult.STATUS_IGNORED, ended.get(0).getStatus());
+	}
+
+	@Test
+	void crashEndsRunningTestAsError() {
+		InstrumentationParser parser = parse(join(status("com.a.FooTest", "one", 1),
+				new String[] { "INSTRUMENTATION_RESULT: shortMsg=Process crashed.", "INSTRUMENTATION_CODE: 0" }));
+
+		assertEquals(1, ended.size());
+		assertEquals(TestResult.STATUS_ERROR, ended.get(0).getStatus());
+		assertFalse(parser.isRunComplete());
+		assertEquals("Process crashed.", parser.getRunFailure());
+		assertEquals(1, failures.size());
+	}
+
+	@Test
+	void outputWithoutResultFailsRun() {
+		InstrumentationParser parser = parse(status("com.a.FooTest", "one", 1));
+
+		assertEquals(1, ended.size());
+		assertEquals("Instrumentation run ended without a result", parser.getRunFailure());
+	}
+}
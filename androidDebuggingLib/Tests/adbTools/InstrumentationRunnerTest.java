@@ -0,0 +1,56 @@
+package adbTools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class InstrumentationRunnerTest {
+	private static final String COMPONENT = "com.a.test/androidx.test.runner.AndroidJUnitRunner";
+
+	private List<String> commands = new CopyOnWriteArrayList<String>();
+	private Transport previousTransport;
+
+	@BeforeEach
+	void stubTransport() {
+		previousTransport = Command.getTransport();
+		// The first run fails the nested test and the retry passes it
+		Command.setTransport(command -> {
+			List<String> args = command.getArgs();
+			commands.add(args.get(args.size() - 1));
+			int code = commands.size() == 1 ? TestResult.STATUS_FAILURE : TestResult.STATUS_OK;
+			return new FakeProcess(String.join("\n", "INSTRUMENTATION_STATUS: class=com.a.Outer$Inner",
+					"INSTRUMENTATION_STATUS: test=one", "INSTRUMENTATION_STATUS_CODE: 1",
+					"INSTRUMENTATION_STATUS: class=com.a.Outer$Inner", "INSTRUMENTATION_STATUS: test=one",
+					"INSTRUMENTATION_STATUS_CODE: " + code, "INSTRUMENTATION_RESULT: stream=",
+					"INSTRUMENTATION_CODE: -1", ""));
+		});
+	}
+
+	@AfterEach
+	void restoreTransport() {
+		Command.setTransport(previousTransport);
+	}
+
+	@Test
+	void retryQuotesTestsAndArguments() throws InterruptedException {
+		InstrumentationRunner runner = new InstrumentationRunner(
+				Arrays.asList(new Device("emulator-5554", "device", null, 0, "adb")), COMPONENT);
+		runner.addInstrumentationArg("annotation", "com.a.Slow Test");
+
+		List<TestResult> results = runner.run();
+
+		assertEquals(Arrays.asList(
+				"am instrument -r -w -e annotation 'com.a.Slow Test' -e numShards 1 -e shardIndex 0 " + COMPONENT,
+				"am instrument -r -w -e annotation 'com.a.Slow Test' -e class 'com.a.Outer$Inner#one' " + COMPONENT),
+				commands);
+		assertEquals(1, results.size());
+		assertFalse(results.get(0).isFailed());
+	}
+}
@@ -0,0 +1,27 @@
+package adbTools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class RecordingTest {
+
+	@Test
+	void keyReplacesSerial() {
+		Command command = new Command("adb", "-s", "emulator-5554", "shell", "getprop");
+
+		assertEquals("-s ${serial} shell getprop", Recording.key(command));
+		assertEquals("emulator-5554", Recording.serial(command));
+	}
+
+	@Test
+	void keyIgnoresTransferCompression() {
+		Command compressed = new Command("adb", "-s", "A1", "push", "-z", "zstd", "/tmp/a", "/sdcard/a");
+		Command disabled = new Command("adb", "-s", "B2", "pull", "-Z", "/sdcard/a", "/tmp/a");
+
+		assertEquals("-s ${serial} push /tmp/a /sdcard/a", Recording.key(compressed));
+		assertEquals("-s ${serial} pull /sdcard/a /tmp/a", Recording.key(disabled));
+		assertEquals("-s ${serial} push /tmp/a /sdcard/a",
+				Recording.key(new Command("adb", "-s", "sim-0001", "push", "/tmp/a", "/sdcard/a")));
+	}
+}
@@ -0,0 +1,51 @@
+package adbTools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+
+	private static RingBuffer filled(int capacity, int samples) {
+		RingBuffer buffer = new RingBuffer(capacity);
+		for (int i = 1; i <= samples; i++) {
+			buffer.add(i, i);
+		}
+		return buffer;
+	}
+
+	@Test
+	void aggregatesCoverOnlyTheWindow() {
+		RingBuffer buffer = filled(4, 6);
+
+		assertEquals(4, buffer.size());
+		assertEquals(6, buffer.getLatest());
+		assertEquals(5, buffer.min(2));
+		assertEquals(6, buffer.max(10));
+		assertEquals(4.5, buffer.mean(4));
+		assertEquals(6, buffer.percentile(4, 95));
+		assertEquals(3, buffer.percentile(4, 0));
+	}
+
+	@Test
+	void emptyWindowIsNaN() {
+		RingBuffer buffer = filled(4, 3);
+
+		for (int window = -1; window <= 0; window++) {
+			assertTrue(Double.isNaN(buffer.min(window)));
+			assertTrue(Double.isNaN(buffer.max(window)));
+			assertTrue(Double.isNaN(buffer.mean(window)));
+			assertTrue(Double.isNaN(buffer.percentile(window, 50)));
+		}
+	}
+
+	@Test
+	void emptyBufferIsNaN() {
+		RingBuffer buffer = new RingBuffer(4);
+
+		assertTrue(Double.isNaN(buffer.getLatest()));
+		assertTrue(Double.isNaN(buffer.mean(4)));
+		assertTrue(Double.isNaN(buffer.percentile(4, 50)));
+	}
+}
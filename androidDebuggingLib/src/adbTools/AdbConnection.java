@@ -0,0 +1,197 @@
+package adbTools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 
+ * A direct connection to the ADB server, used for services that stream data
+ * (such as tcp: forwarding or sync:) where starting an adb process per request
+ * would cost too much. Requests follow the ADB smart socket protocol: a four
+ * digit hex length, the request, then an OKAY or FAIL reply
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+class AdbConnection implements Closeable {
+	static final String HOST = "127.0.0.1";
+	static final int DEFAULT_PORT = 5037;
+
+	// Read like the adb client does, and pointed at a fake server by the tests
+	static volatile int port = serverPort();
+
+	private SocketChannel channel;
+	private InputStream in;
+	private OutputStream out;
+
+	private AdbConnection() throws IOException {
+		channel = SocketChannel.open(new InetSocketAddress(HOST, port));
+		channel.socket().setTcpNoDelay(true);
+		in = channel.socket().getInputStream();
+		out = channel.socket().getOutputStream();
+	}
+
+	/**
+	 * 
+	 * Opens a connection to a service on a device
+	 * 
+	 * @param device  The device to connect to
+	 * @param service The service to open (such as 'tcp:8080' or 'sync:')
+	 * @return An open connection, ready to carry the data of the service
+	 * @throws IOException When the ADB server could not be reached or refused the request
+	 * 
+	 */
+	static AdbConnection open(Device device, String service) throws IOException {
+		return open(device, service, 0);
+	}
+
+	/**
+	 * 
+	 * Opens a connection to a service on a device, giving up on reads that take too long
+	 * 
+	 * @param device        The device to connect to
+	 * @param service       The service to open (such as 'tcp:8080' or 'sync:')
+	 * @param timeoutMillis The longest a read can block in milliseconds, or 0 to wait forever
+	 * @return An open connection, ready to carry the data of the service
+	 * @throws IOException When the ADB server could not be reached, refused the request or timed out
+	 * 
+	 */
+	static AdbConnection open(Device device, String service, int timeoutMillis) throws IOException {
+		AdbConnection connection = new AdbConnection();
+		try {
+			connection.channel.socket().setSoTimeout(timeoutMillis);
+			connection.request("host:transport:" + device.getSerial());
+			connection.request(service);
+		} catch (IOException e) {
+			connection.close();
+			throw e;
+		}
+		return connection;
+	}
+
+	/**
+	 * 
+	 * Sends a host request to the ADB server and reads its length prefixed reply
+	 * 
+	 * @param request The request (such as 'host-serial:SERIAL:features')
+	 * @return The reply of the server
+	 * @throws IOException When the ADB server could not be reached or refused the request
+	 * 
+	 */
+	static String query(String request) throws IOException {
+		AdbConnection connection = new AdbConnection();
+		try {
+			connection.request(request);
+			return connection.readString();
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * 
+	 * A getter method for the underlying channel
+	 * 
+	 * @return The socket channel connected to the ADB server
+	 * 
+	 */
+	SocketChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * 
+	 * A getter method for the input of the connection. Only usable while the
+	 * channel is in blocking mode
+	 * 
+	 * @return A stream of the data sent by the service
+	 * 
+	 */
+	InputStream getInputStream() {
+		return in;
+	}
+
+	/**
+	 * 
+	 * A getter method for the output of the connection. Only usable while the
+	 * channel is in blocking mode
+	 * 
+	 * @return A stream of the data sent to the service
+	 * 
+	 */
+	OutputStream getOutputStream() {
+		return out;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * 
+	 * Encodes a request for the ADB server, for callers that write it themselves
+	 * on a non-blocking channel
+	 * 
+	 * @param request The request (such as 'host:transport:SERIAL' or 'tcp:8080')
+	 * @return A buffer holding the length prefixed request, ready to be written
+	 * 
+	 */
+	static ByteBuffer encode(String request) {
+		byte[] payload = request.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(4 + payload.length);
+		buffer.put(String.format("%04x", payload.length).getBytes(StandardCharsets.US_ASCII));
+		buffer.put(payload);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static int serverPort() {
+		String value = System.getenv("ANDROID_ADB_SERVER_PORT");
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				// adb rejects it too, so fall back to the usual port
+			}
+		}
+		return DEFAULT_PORT;
+	}
+
+	private void request(String request) throws IOException {
+		out.write(encode(request).array());
+		out.flush();
+
+		String status = new String(readFully(4), StandardCharsets.US_ASCII);
+		if (status.equals("FAIL")) {
+			throw new IOException("ADB refused '" + request + "': " + readString());
+		} else if (!status.equals("OKAY")) {
+			throw new IOException("Unexpected reply from ADB: " + status);
+		}
+	}
+
+	private String readString() throws IOException {
+		int length = Integer.parseInt(new String(readFully(4), StandardCharsets.US_ASCII), 16);
+		return new String(readFully(length), StandardCharsets.UTF_8);
+	}
+
+	private byte[] readFully(int length) throws IOException {
+		byte[] data = new byte[length];
+		int read = 0;
+		while (read < length) {
+			int n = in.read(data, read, length - read);
+			if (n < 0) {
+				throw new IOException("The connection to ADB was closed");
+			}
+			read += n;
+		}
+		return data;
+	}
+}
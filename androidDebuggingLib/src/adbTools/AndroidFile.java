@@ -14,8 +14,14 @@ import java.util.regex.Pattern;
  *
  */
 public class AndroidFile {
+	private static final Pattern EXTENSION = Pattern.compile("\\.\\w+$", Pattern.CASE_INSENSITIVE);
+	private static final Pattern DIRECTORY_NAME = Pattern.compile("\\/\\w+$", Pattern.CASE_INSENSITIVE);
+
 	private String pathToFile;
 	private String fileExtension;
+	private String fileName;
+	private boolean file;
+	private boolean parsed = false;
 	
 	/**
 	 * 
@@ -27,14 +33,32 @@ public class AndroidFile {
 	public AndroidFile(String path) {
 		pathToFile = path;
 		
-		Pattern p = Pattern.compile("\\.\\w+$", Pattern.CASE_INSENSITIVE);
-		Matcher m = p.matcher(path);
+		Matcher m = EXTENSION.matcher(path);
 		
 		if(m.find()) {
 			fileExtension = path.replace(path.split("\\.\\w+$")[0], "");
 		}
 	}
 	
+	/**
+	 * 
+	 * Class constructor for an AndroidFile whose details are already known, such as
+	 * one found by a FileIndex. Nothing is parsed from the path
+	 * 
+	 * @param path The path to the file or directory on a device
+	 * @param name The name of the file or directory
+	 * @param extension The extension of the file (such as .apk), or null
+	 * @param isFile Whether this is a file rather than a directory
+	 * 
+	 */
+	AndroidFile(String path, String name, String extension, boolean isFile) {
+		pathToFile = path;
+		fileName = name;
+		fileExtension = extension;
+		file = isFile;
+		parsed = true;
+	}
+	
 	/**
 	 * 
 	 * A method to check if this is a file or directory
@@ -43,8 +67,10 @@ public class AndroidFile {
 	 * 
 	 */
 	public boolean isFile() {
-		Pattern p = Pattern.compile("\\.\\w+$", Pattern.CASE_INSENSITIVE);
-		Matcher m = p.matcher(pathToFile);
+		if(parsed) {
+			return file;
+		}
+		Matcher m = EXTENSION.matcher(pathToFile);
 		return m.find();
 	}
 	
@@ -83,11 +109,13 @@ public class AndroidFile {
 	 * 
 	 */
 	public String getFileName() {
+		if(parsed) {
+			return fileName;
+		}
 		if(this.isFile()) {
 			return pathToFile.replace(pathToFile.split("\\w+\\.\\w+$")[0], "");
 		}else {
-			Pattern p = Pattern.compile("\\/\\w+$", Pattern.CASE_INSENSITIVE);
-			Matcher m = p.matcher(pathToFile);
+			Matcher m = DIRECTORY_NAME.matcher(pathToFile);
 			if(m.find()) {
 				return pathToFile.replace(pathToFile.split("\\/\\w+$")[0], "").replace("/", "");
 			}
@@ -0,0 +1,30 @@
+package adbTools;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 
+ * A listener that receives the entries of an archive while it is streamed from a
+ * device
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public interface ArchiveEntryListener {
+
+	/**
+	 * 
+	 * Called for every entry that matches the filter of the streamer. The data is
+	 * only readable during this call; anything left unread is skipped
+	 * 
+	 * @param name The path of the entry inside the archive
+	 * @param size The size of the entry in bytes, or -1 if the archive does not say
+	 * @param data The contents of the entry
+	 * @return True to keep streaming, false to stop and discard the rest of the archive
+	 * @throws IOException When the entry could not be read
+	 * 
+	 */
+	boolean entryFound(String name, long size, InputStream data) throws IOException;
+}
@@ -0,0 +1,413 @@
+package adbTools;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 
+ * Streams archives (bugreports and tar archives of device directories) straight
+ * from a device and unpacks them while they arrive. Entries matching the filter
+ * are handed to a listener as streams, and everything else is read past without
+ * being stored, so nothing is written to disk and the first useful entry is
+ * available before the archive is finished
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class ArchiveStreamer {
+	private static final int BLOCK = 512;
+
+	private Device device;
+	private List<PathMatcher> filters = new ArrayList<PathMatcher>();
+
+	private long bytesRead;
+	private int entriesRead;
+	private int entriesDelivered;
+	private long firstEntryMillis;
+
+	/**
+	 * 
+	 * Class constructor for an archive streamer
+	 * 
+	 * @param setDevice The device to stream archives from
+	 * 
+	 */
+	public ArchiveStreamer(Device setDevice) {
+		device = setDevice;
+	}
+
+	/**
+	 * 
+	 * Sets the entries to pass to the listener. Only the file name of an entry is
+	 * matched when a pattern has no '/'. All entries are passed when no pattern is set
+	 * 
+	 * @param globs Glob patterns (such as 'bugreport-*.txt' or 'FS/data/anr/*')
+	 * 
+	 */
+	public void setFilter(String... globs) {
+		filters.clear();
+		for (int i = 0; i < globs.length; i++) {
+			filters.add(FileSystems.getDefault().getPathMatcher("glob:" + globs[i]));
+		}
+	}
+
+	/**
+	 * 
+	 * Streams a zipped bugreport from the device with "bugreportz -s"
+	 * 
+	 * @param listener The listener to pass matching entries to
+	 * @throws IOException When adb could not be started or the archive could not be read
+	 * 
+	 */
+	public void bugreport(ArchiveEntryListener listener) throws IOException {
+		// Like tar below, errors and progress would otherwise be mixed into the zip
+		Process process = device.startExecOut("bugreportz -s 2>/dev/null");
+		try {
+			readZip(process.getInputStream(), listener);
+		} finally {
+			process.destroy();
+		}
+	}
+
+	/**
+	 * 
+	 * Streams a file or directory from the device as a tar archive
+	 * 
+	 * @param remotePath The file or directory on the device
+	 * @param listener   The listener to pass matching entries to
+	 * @throws IOException When adb could not be started or the archive could not be read
+	 * 
+	 */
+	public void tar(AndroidFile remotePath, ArchiveEntryListener listener) throws IOException {
+		// exec-out has no separate error stream, so warnings would land between tar blocks
+		Process process = device.startExecOut("tar -cf - " + Device.quote(remotePath.toString()) + " 2>/dev/null");
+		try {
+			readTar(process.getInputStream(), listener);
+		} finally {
+			process.destroy();
+		}
+	}
+
+	/**
+	 * 
+	 * Unpacks a zip archive from any stream
+	 * 
+	 * @param in       The stream of the zip archive
+	 * @param listener The listener to pass matching entries to
+	 * @throws IOException When the archive could not be read
+	 * 
+	 */
+	public void readZip(InputStream in, ArchiveEntryListener listener) throws IOException {
+		long started = reset();
+		ZipInputStream zip = new ZipInputStream(new CountingStream(in));
+		ZipEntry entry = zip.getNextEntry();
+		while (entry != null) {
+			entriesRead++;
+			if (!entry.isDirectory() && matches(entry.getName())) {
+				if (!deliver(listener, entry.getName(), entry.getSize(), new EntryStream(zip, -1), started)) {
+					return;
+				}
+			}
+			zip.closeEntry();
+			entry = zip.getNextEntry();
+		}
+	}
+
+	/**
+	 * 
+	 * Unpacks a tar archive from any stream. Supports ustar archives along with GNU
+	 * and pax long names
+	 * 
+	 * @param in       The stream of the tar archive
+	 * @param listener The listener to pass matching entries to
+	 * @throws IOException When the archive could not be read
+	 * 
+	 */
+	public void readTar(InputStream in, ArchiveEntryListener listener) throws IOException {
+		long started = reset();
+		InputStream tar = new CountingStream(in);
+		byte[] header = new byte[BLOCK];
+		String longName = null;
+
+		while (readBlock(tar, header)) {
+			if (header[0] == 0) {
+				return;
+			}
+			long size = parseOctal(header, 124, 12);
+			char type = (char) header[156];
+			long padding = (BLOCK - size % BLOCK) % BLOCK;
+
+			if (type == 'L' || type == 'x') {
+				byte[] data = tar.readNBytes((int) size);
+				skipFully(tar, padding);
+				longName = type == 'L' ? parseString(data, 0, data.length) : parsePaxPath(data);
+				continue;
+			}
+
+			String name = longName != null ? longName : parseName(header);
+			longName = null;
+			entriesRead++;
+
+			if ((type == '0' || type == 0) && matches(name)) {
+				EntryStream data = new EntryStream(tar, size);
+				if (!deliver(listener, name, size, data, started)) {
+					return;
+				}
+				skipFully(tar, data.remaining + padding);
+			} else if (type != '5') {
+				skipFully(tar, size + padding);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * A getter method for the bytes read from the device by the last call
+	 * 
+	 * @return The number of archive bytes read, including skipped entries
+	 * 
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * 
+	 * A getter method for the entries seen by the last call
+	 * 
+	 * @return The number of entries read from the archive
+	 * 
+	 */
+	public int getEntriesRead() {
+		return entriesRead;
+	}
+
+	/**
+	 * 
+	 * A getter method for the entries passed to the listener by the last call
+	 * 
+	 * @return The number of entries that matched the filter
+	 * 
+	 */
+	public int getEntriesDelivered() {
+		return entriesDelivered;
+	}
+
+	/**
+	 * 
+	 * A getter method for the time it took to reach the first matching entry
+	 * 
+	 * @return The time in milliseconds from the start of the call until the first
+	 *         entry was passed to the listener, or -1 if none was
+	 * 
+	 */
+	public long getFirstEntryMillis() {
+		return firstEntryMillis;
+	}
+
+	private long reset() {
+		bytesRead = 0;
+		entriesRead = 0;
+		entriesDelivered = 0;
+		firstEntryMillis = -1;
+		return System.currentTimeMillis();
+	}
+
+	private boolean deliver(ArchiveEntryListener listener, String name, long size, InputStream data, long started)
+			throws IOException {
+		if (firstEntryMillis < 0) {
+			firstEntryMillis = System.currentTimeMillis() - started;
+		}
+		entriesDelivered++;
+		return listener.entryFound(name, size, data);
+	}
+
+	private boolean matches(String name) {
+		if (filters.size() == 0) {
+			return true;
+		}
+		String fileName = name.substring(name.lastIndexOf('/') + 1);
+		for (int i = 0; i < filters.size(); i++) {
+			if (filters.get(i).matches(Paths.get(name)) || filters.get(i).matches(Paths.get(fileName))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean readBlock(InputStream in, byte[] block) throws IOException {
+		int read = in.readNBytes(block, 0, block.length);
+		if (read == 0) {
+			return false;
+		} else if (read < block.length) {
+			throw new IOException("The tar archive ended in the middle of a header");
+		}
+		return true;
+	}
+
+	private void skipFully(InputStream in, long count) throws IOException {
+		in.skipNBytes(count);
+	}
+
+	private String parseName(byte[] header) {
+		String name = parseString(header, 0, 100);
+		if (new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar")) {
+			String prefix = parseString(header, 345, 155);
+			if (prefix.length() > 0) {
+				name = prefix + "/" + name;
+			}
+		}
+		return name;
+	}
+
+	private String parsePaxPath(byte[] data) {
+		String records = new String(data, StandardCharsets.UTF_8);
+		int start = 0;
+		while (start < records.length()) {
+			int space = records.indexOf(' ', start);
+			if (space < 0) {
+				break;
+			}
+			int length = Integer.parseInt(records.substring(start, space));
+			String record = records.substring(space + 1, start + length - 1);
+			if (record.startsWith("path=")) {
+				return record.substring(5);
+			}
+			start += length;
+		}
+		return null;
+	}
+
+	private String parseString(byte[] data, int offset, int length) {
+		int end = offset;
+		while (end < offset + length && data[end] != 0) {
+			end++;
+		}
+		return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+	private long parseOctal(byte[] data, int offset, int length) {
+		long value = 0;
+		for (int i = offset; i < offset + length; i++) {
+			if (data[i] >= '0' && data[i] <= '7') {
+				value = value * 8 + (data[i] - '0');
+			} else if (data[i] != ' ' || value > 0) {
+				break;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * 
+	 * Counts the bytes read from the device
+	 * 
+	 */
+	private class CountingStream extends FilterInputStream {
+		private CountingStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				bytesRead++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				bytesRead += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			bytesRead += skipped;
+			return skipped;
+		}
+	}
+
+	/**
+	 * 
+	 * The contents of one entry. Closing it does not close the archive, and reads
+	 * stop at the end of the entry
+	 * 
+	 */
+	private static class EntryStream extends FilterInputStream {
+		private long remaining;
+
+		private EntryStream(InputStream in, long size) {
+			super(in);
+			remaining = size;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining == 0) {
+				return -1;
+			}
+			int b = super.read();
+			if (b >= 0 && remaining > 0) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining == 0) {
+				return -1;
+			}
+			if (remaining > 0) {
+				len = (int) Math.min(len, remaining);
+			}
+			int n = super.read(b, off, len);
+			if (n > 0 && remaining > 0) {
+				remaining -= n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			if (remaining >= 0) {
+				n = Math.min(n, remaining);
+			}
+			long skipped = super.skip(n);
+			if (remaining > 0) {
+				remaining -= skipped;
+			}
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			if (remaining >= 0) {
+				return (int) Math.min(super.available(), remaining);
+			}
+			return super.available();
+		}
+
+		@Override
+		public void close() {
+			// The archive stays open for the next entry
+		}
+	}
+}
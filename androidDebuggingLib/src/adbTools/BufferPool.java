@@ -0,0 +1,56 @@
+package adbTools;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 
+ * A pool of direct byte buffers of one size, so that connections which come
+ * and go do not allocate a new direct buffer every time
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+class BufferPool {
+	private int bufferSize;
+	private ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	/**
+	 * 
+	 * Class constructor for a buffer pool
+	 * 
+	 * @param setBufferSize The size in bytes of every buffer in the pool
+	 * 
+	 */
+	BufferPool(int setBufferSize) {
+		bufferSize = setBufferSize;
+	}
+
+	/**
+	 * 
+	 * Takes a cleared buffer from the pool, allocating one if the pool is empty
+	 * 
+	 * @return A buffer ready to be filled
+	 * 
+	 */
+	ByteBuffer take() {
+		ByteBuffer buffer = free.poll();
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+		return buffer;
+	}
+
+	/**
+	 * 
+	 * Returns a buffer to the pool
+	 * 
+	 * @param buffer A buffer taken from this pool
+	 * 
+	 */
+	void give(ByteBuffer buffer) {
+		buffer.clear();
+		free.offer(buffer);
+	}
+}
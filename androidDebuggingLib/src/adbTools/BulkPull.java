@@ -0,0 +1,566 @@
+package adbTools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 
+ * Pulls many files from a device at once. Instead of one adb process (and one
+ * round trip) per file, several sync connections are opened directly on the ADB
+ * server and each keeps a window of requests in flight, so the device is always
+ * sending data. Received data is written to local files asynchronously while the
+ * next file is read
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class BulkPull {
+	private static final int SYNC_DATA_MAX = 64 * 1024;
+	private static final int MAX_ATTEMPTS = 2;
+	private static final int WRITES_IN_FLIGHT = 16;
+	private static final int MODE_TYPE = 0xF000;
+	private static final int MODE_DIRECTORY = 0x4000;
+	private static final int MODE_FILE = 0x8000;
+
+	private Device device;
+	private int connections = 4;
+	private int window = 32;
+	private BufferPool buffers = new BufferPool(SYNC_DATA_MAX);
+
+	private ConcurrentLinkedQueue<Item> pending = new ConcurrentLinkedQueue<Item>();
+	private Map<String, String> failures = new ConcurrentHashMap<String, String>();
+	private AtomicLong filesPulled = new AtomicLong();
+	private AtomicLong bytesPulled = new AtomicLong();
+	private AtomicInteger workers = new AtomicInteger();
+	private Phaser writes;
+	private long elapsedMillis;
+
+	/**
+	 * 
+	 * Class constructor for a bulk pull
+	 * 
+	 * @param setDevice The device to pull from
+	 * 
+	 */
+	public BulkPull(Device setDevice) {
+		device = setDevice;
+	}
+
+	/**
+	 * 
+	 * Sets the number of sync connections used at once
+	 * 
+	 * @param toSet The number of parallel connections, at least 1
+	 * 
+	 */
+	public void setConnections(int toSet) {
+		connections = Math.max(1, toSet);
+	}
+
+	/**
+	 * 
+	 * Sets the number of requests each connection keeps in flight
+	 * 
+	 * @param toSet The number of outstanding requests per connection, at least 1
+	 * 
+	 */
+	public void setWindow(int toSet) {
+		window = Math.max(1, toSet);
+	}
+
+	/**
+	 * 
+	 * Pulls a list of files into one local directory. Only the first of several
+	 * files with the same name is pulled; the others are reported as failures
+	 * 
+	 * @param remoteFiles The files on the device
+	 * @param localPath   A path to the local directory the files are to be placed in
+	 * @throws FileNotFoundException When the local directory does not exist
+	 * @throws InterruptedException  When interrupted while waiting for the transfer
+	 * 
+	 */
+	public void pull(List<AndroidFile> remoteFiles, String localPath) throws FileNotFoundException, InterruptedException {
+		File local = checkDirectory(localPath);
+		List<Item> items = new ArrayList<Item>();
+		List<Item> collisions = new ArrayList<Item>();
+		HashSet<String> names = new HashSet<String>();
+		for (int i = 0; i < remoteFiles.size(); i++) {
+			String remote = remoteFiles.get(i).toString();
+			String name = remote.substring(remote.lastIndexOf('/') + 1);
+			Item item = new Item(remote, new File(local, name));
+			if (names.add(name)) {
+				items.add(item);
+			} else {
+				collisions.add(item);
+			}
+		}
+		run(items);
+		for (int i = 0; i < collisions.size(); i++) {
+			failures.put(collisions.get(i).remote, "Another file named " + collisions.get(i).local.getName()
+					+ " was pulled to the same directory");
+		}
+	}
+
+	/**
+	 * 
+	 * Pulls every file under a directory on the device, keeping the directory
+	 * structure below it
+	 * 
+	 * @param remoteDirectory The directory on the device
+	 * @param localPath       A path to the local directory the files are to be placed in
+	 * @throws IOException          When the local directory does not exist or the
+	 *                              device could not be listed
+	 * @throws InterruptedException When interrupted while waiting for the transfer
+	 * 
+	 */
+	public void pullDirectory(AndroidFile remoteDirectory, String localPath) throws IOException, InterruptedException {
+		File local = checkDirectory(localPath);
+		String root = remoteDirectory.toString();
+		if (root.endsWith("/")) {
+			root = root.substring(0, root.length() - 1);
+		}
+
+		List<Item> items = new ArrayList<Item>();
+		AdbConnection connection = AdbConnection.open(device, "sync:");
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+			ArrayDeque<String> directories = new ArrayDeque<String>();
+			directories.add("");
+			while (directories.size() > 0) {
+				String relative = directories.poll();
+				writeRequest(out, "LIST", (root + relative).length() == 0 ? "/" : root + relative);
+				out.flush();
+				while (true) {
+					String id = readId(in);
+					if (id.equals("DONE")) {
+						in.skipNBytes(16);
+						break;
+					} else if (!id.equals("DENT")) {
+						throw new IOException("Unexpected reply while listing " + root + relative + ": " + id);
+					}
+					int mode = readInt(in);
+					readInt(in);
+					readInt(in);
+					String name = new String(in.readNBytes(readInt(in)), StandardCharsets.UTF_8);
+					if (name.equals(".") || name.equals("..")) {
+						continue;
+					}
+					if ((mode & MODE_TYPE) == MODE_DIRECTORY) {
+						directories.add(relative + "/" + name);
+					} else if ((mode & MODE_TYPE) == MODE_FILE) {
+						items.add(new Item(root + relative + "/" + name, new File(local, relative + "/" + name)));
+					}
+				}
+			}
+			writeRequest(out, "QUIT", "");
+			out.flush();
+		} finally {
+			connection.close();
+		}
+		run(items);
+	}
+
+	/**
+	 * 
+	 * A getter method for the files pulled by the last call
+	 * 
+	 * @return The number of files written locally
+	 * 
+	 */
+	public long getFilesPulled() {
+		return filesPulled.get();
+	}
+
+	/**
+	 * 
+	 * A getter method for the bytes pulled by the last call
+	 * 
+	 * @return The number of file bytes received
+	 * 
+	 */
+	public long getBytesPulled() {
+		return bytesPulled.get();
+	}
+
+	/**
+	 * 
+	 * A getter method for the duration of the last call
+	 * 
+	 * @return The time in milliseconds from the first request until every file was written
+	 * 
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * 
+	 * A getter method for the file rate of the last call
+	 * 
+	 * @return The files pulled per second
+	 * 
+	 */
+	public double getFilesPerSecond() {
+		return elapsedMillis == 0 ? 0 : filesPulled.get() * 1000.0 / elapsedMillis;
+	}
+
+	/**
+	 * 
+	 * A getter method for the throughput of the last call
+	 * 
+	 * @return The bytes pulled per second
+	 * 
+	 */
+	public double getBytesPerSecond() {
+		return elapsedMillis == 0 ? 0 : bytesPulled.get() * 1000.0 / elapsedMillis;
+	}
+
+	/**
+	 * 
+	 * A getter method for the files that could not be pulled by the last call
+	 * 
+	 * @return A map of device paths to the reason they failed
+	 * 
+	 */
+	public Map<String, String> getFailures() {
+		return failures;
+	}
+
+	private File checkDirectory(String localPath) throws FileNotFoundException {
+		File local = new File(localPath);
+		if (!local.isDirectory()) {
+			throw new FileNotFoundException("The directory specified in localPath does not exist on this machine");
+		}
+		return local;
+	}
+
+	private void run(List<Item> items) throws InterruptedException {
+		pending.clear();
+		pending.addAll(items);
+		failures.clear();
+		filesPulled.set(0);
+		bytesPulled.set(0);
+		writes = new Phaser(1);
+		long started = System.currentTimeMillis();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		workers.set(Math.min(connections, items.size()));
+		for (int i = 0; i < Math.min(connections, items.size()); i++) {
+			Thread thread = new Thread(this::work, "pull-" + device.getSerial() + "-" + i);
+			threads.add(thread);
+			thread.start();
+		}
+		for (int i = 0; i < threads.size(); i++) {
+			threads.get(i).join();
+		}
+		writes.arriveAndAwaitAdvance();
+		elapsedMillis = System.currentTimeMillis() - started;
+	}
+
+	private void work() {
+		String lastError = "No connection was left to pull the file";
+		try {
+			while (!pending.isEmpty()) {
+				AdbConnection connection;
+				try {
+					connection = AdbConnection.open(device, "sync:");
+				} catch (IOException e) {
+					// The other connections may still be pulling, so the files are left to them
+					// unless this was the last one
+					lastError = reason(e);
+					return;
+				}
+
+				ArrayDeque<Item> inFlight = new ArrayDeque<Item>();
+				try {
+					try {
+						transfer(connection, inFlight);
+					} finally {
+						connection.close();
+					}
+				} catch (IOException e) {
+					Item broken = inFlight.poll();
+					if (broken != null) {
+						broken.attempts++;
+						if (broken.attempts >= MAX_ATTEMPTS) {
+							failures.put(broken.remote, reason(e));
+						} else {
+							pending.add(broken);
+						}
+					}
+				} finally {
+					pending.addAll(inFlight);
+				}
+			}
+		} finally {
+			if (workers.decrementAndGet() == 0) {
+				Item item = pending.poll();
+				while (item != null) {
+					failures.put(item.remote, lastError);
+					item = pending.poll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * Keeps the window of RECV requests full and reads the replies in order. Returns
+	 * when there is nothing left to pull, or after a FAIL reply since the device
+	 * closes the sync session after one
+	 * 
+	 * @param connection An open sync connection
+	 * @param inFlight   The requests sent on the connection that have not been answered
+	 * @throws IOException When the connection was lost or a local file could not be written
+	 * 
+	 */
+	private void transfer(AdbConnection connection, ArrayDeque<Item> inFlight) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), SYNC_DATA_MAX));
+		OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+		byte[] chunk = new byte[SYNC_DATA_MAX];
+		Semaphore writeSlots = new Semaphore(WRITES_IN_FLIGHT);
+
+		while (true) {
+			boolean wrote = false;
+			while (inFlight.size() < window) {
+				Item next = pending.poll();
+				if (next == null) {
+					break;
+				}
+				writeRequest(out, "RECV", next.remote);
+				inFlight.add(next);
+				wrote = true;
+			}
+			if (wrote) {
+				out.flush();
+			}
+
+			Item item = inFlight.peek();
+			if (item == null) {
+				writeRequest(out, "QUIT", "");
+				out.flush();
+				return;
+			}
+
+			Sink sink = null;
+			try {
+				while (true) {
+					String id = readId(in);
+					int length = readInt(in);
+					if (id.equals("DATA")) {
+						if (length < 0 || length > SYNC_DATA_MAX) {
+							throw new IOException("Invalid chunk of " + length + " bytes while pulling " + item.remote);
+						}
+						if (sink == null) {
+							sink = new Sink(item, writeSlots);
+						}
+						in.readFully(chunk, 0, length);
+						sink.write(chunk, length);
+						bytesPulled.addAndGet(length);
+					} else if (id.equals("DONE")) {
+						if (sink == null) {
+							sink = new Sink(item, writeSlots);
+						}
+						sink.finish(true);
+						sink = null;
+						inFlight.poll();
+						break;
+					} else if (id.equals("FAIL")) {
+						failures.put(item.remote, new String(in.readNBytes(length), StandardCharsets.UTF_8));
+						if (sink != null) {
+							sink.finish(false);
+							sink = null;
+						}
+						inFlight.poll();
+						return;
+					} else {
+						throw new IOException("Unexpected reply while pulling " + item.remote + ": " + id);
+					}
+				}
+			} finally {
+				if (sink != null) {
+					// The file is retried, so this partial copy must be gone before it is written again
+					sink.abort();
+				}
+			}
+		}
+	}
+
+	private void writeRequest(OutputStream out, String id, String path) throws IOException {
+		byte[] name = path.getBytes(StandardCharsets.UTF_8);
+		out.write(id.getBytes(StandardCharsets.US_ASCII));
+		out.write(name.length & 0xff);
+		out.write((name.length >> 8) & 0xff);
+		out.write((name.length >> 16) & 0xff);
+		out.write((name.length >> 24) & 0xff);
+		out.write(name);
+	}
+
+	private String readId(DataInputStream in) throws IOException {
+		byte[] id = new byte[4];
+		in.readFully(id);
+		return new String(id, StandardCharsets.US_ASCII);
+	}
+
+	private int readInt(DataInputStream in) throws IOException {
+		return Integer.reverseBytes(in.readInt());
+	}
+
+	private static String reason(Exception e) {
+		// Some exceptions, such as the EOFException of a dropped connection, have no message
+		return e.getMessage() == null ? e.toString() : e.getMessage();
+	}
+
+	/**
+	 * 
+	 * A file on the device and where it is to be written
+	 * 
+	 */
+	private static class Item {
+		private String remote;
+		private File local;
+		private int attempts = 0;
+
+		private Item(String setRemote, File setLocal) {
+			remote = setRemote;
+			local = setLocal;
+		}
+	}
+
+	/**
+	 * 
+	 * Writes the data of one file asynchronously. The file is closed once it has
+	 * been finished and every write has completed, and only then counted as pulled.
+	 * Writes share the slots of their connection, so a disk slower than the device
+	 * holds back the connection instead of filling memory with buffers
+	 * 
+	 */
+	private class Sink {
+		private Item item;
+		private Semaphore slots;
+		private AsynchronousFileChannel channel;
+		private long position = 0;
+		private int outstanding = 1;
+		private boolean complete = false;
+		private String error;
+
+		private Sink(Item setItem, Semaphore setSlots) throws IOException {
+			item = setItem;
+			slots = setSlots;
+			File parent = item.local.getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			channel = AsynchronousFileChannel.open(item.local.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			writes.register();
+		}
+
+		private void write(byte[] chunk, int length) {
+			slots.acquireUninterruptibly();
+			ByteBuffer buffer = buffers.take();
+			buffer.put(chunk, 0, length);
+			buffer.flip();
+
+			long at;
+			synchronized (this) {
+				outstanding++;
+				at = position;
+				position += length;
+			}
+			channel.write(buffer, at, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+				private long next = at;
+
+				@Override
+				public void completed(Integer written, ByteBuffer data) {
+					next += written;
+					if (data.hasRemaining()) {
+						channel.write(data, next, data, this);
+					} else {
+						done(data, null);
+					}
+				}
+
+				@Override
+				public void failed(Throwable e, ByteBuffer data) {
+					done(data, e);
+				}
+			});
+		}
+
+		private synchronized void finish(boolean setComplete) {
+			complete = setComplete;
+			release();
+		}
+
+		private synchronized void abort() {
+			finish(false);
+			while (outstanding > 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+
+		private void done(ByteBuffer buffer, Throwable e) {
+			buffers.give(buffer);
+			slots.release();
+			synchronized (this) {
+				if (e != null && error == null) {
+					error = e.toString();
+				}
+				release();
+			}
+		}
+
+		private synchronized void release() {
+			outstanding--;
+			if (outstanding > 0) {
+				return;
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e.toString();
+				}
+			}
+			if (error != null) {
+				failures.put(item.remote, "Could not write " + item.local + ": " + error);
+				item.local.delete();
+			} else if (complete) {
+				filesPulled.incrementAndGet();
+			} else {
+				item.local.delete();
+			}
+			writes.arriveAndDeregister();
+			notifyAll();
+		}
+	}
+}
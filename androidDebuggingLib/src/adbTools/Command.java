@@ -15,6 +15,8 @@ import java.util.List;
  *
  */
 public class Command {
+	private static volatile Transport transport = new ProcessTransport();
+
 	private String command;
 	private List<String> args = new ArrayList<String>();
 	private List<String> output = new ArrayList<String>();
@@ -167,6 +169,42 @@ public class Command {
 		}
 	}
 
+	/**
+	 * 
+	 * Sets the transport every command is started with, such as a
+	 * RecordingTransport or a ReplayTransport
+	 * 
+	 * @param toSet The transport to use
+	 * 
+	 */
+	public static void setTransport(Transport toSet) {
+		transport = toSet;
+	}
+
+	/**
+	 * 
+	 * Getter method for the transport every command is started with
+	 * 
+	 * @return The current transport, a ProcessTransport by default
+	 * 
+	 */
+	public static Transport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * 
+	 * Starts the given command without waiting for it to finish so that its
+	 * output can be read while it is still running
+	 * 
+	 * @return The running process for this command
+	 * @throws IOException When the command could not be started
+	 * 
+	 */
+	public Process start() throws IOException {
+		return transport.start(this);
+	}
+
 	/**
 	 * 
 	 * Executes the given command and adds line by line output to output field
@@ -174,7 +212,7 @@ public class Command {
 	 */
 	public void exec() {
 		try {
-			Process process = Runtime.getRuntime().exec(this.toString());
+			Process process = transport.start(this);
 
 			BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
 			BufferedReader errOut = new BufferedReader(new InputStreamReader(process.getErrorStream()));
@@ -0,0 +1,379 @@
+package adbTools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * Connects to many network devices at once and keeps them connected. Connections
+ * are made through the ADB server socket rather than one "adb connect" process
+ * per device, a bounded number at a time. Connected devices are probed
+ * periodically, and devices that drop are reconnected with exponential backoff.
+ * Connected devices are listed by PlatformTools.getDevices() like any other device
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class ConnectionManager implements Closeable {
+	public static final String STATE_CONNECTING = "connecting";
+	public static final String STATE_CONNECTED = "connected";
+	public static final String STATE_WAITING = "waiting";
+	public static final String STATE_REMOVED = "removed";
+
+	private PlatformTools platformTools;
+	private int parallelism = 16;
+	private int keepAliveSeconds = 15;
+	private int timeoutMillis = 5000;
+	private long initialBackoffMillis = 1000;
+	private long maxBackoffMillis = 60000;
+
+	private ScheduledExecutorService scheduler;
+	private Map<String, Target> targets = new ConcurrentHashMap<String, Target>();
+	private AtomicInteger reconnects = new AtomicInteger();
+
+	/**
+	 * 
+	 * Class constructor for a connection manager
+	 * 
+	 * @param setPlatformTools The ADB installation whose server holds the connections
+	 * 
+	 */
+	public ConnectionManager(PlatformTools setPlatformTools) {
+		platformTools = setPlatformTools;
+	}
+
+	/**
+	 * 
+	 * Sets the number of connections and probes that can run at once. Only
+	 * affects the manager before the first target is added
+	 * 
+	 * @param toSet The number of worker threads, at least 1
+	 * 
+	 */
+	public void setParallelism(int toSet) {
+		parallelism = Math.max(1, toSet);
+	}
+
+	/**
+	 * 
+	 * Sets the number of seconds between health probes of a connected device
+	 * 
+	 * @param toSet The probe interval in seconds, at least 1
+	 * 
+	 */
+	public void setKeepAlive(int toSet) {
+		keepAliveSeconds = Math.max(1, toSet);
+	}
+
+	/**
+	 * 
+	 * Sets how long a connection or probe can take before the device is
+	 * considered unreachable
+	 * 
+	 * @param toSet The timeout in milliseconds
+	 * 
+	 */
+	public void setTimeout(int toSet) {
+		timeoutMillis = toSet;
+	}
+
+	/**
+	 * 
+	 * Sets the delays between reconnection attempts. The delay doubles after
+	 * every failed attempt, up to the maximum
+	 * 
+	 * @param initialMillis The delay after the first failure in milliseconds
+	 * @param maxMillis     The longest delay in milliseconds
+	 * 
+	 */
+	public void setBackoff(long initialMillis, long maxMillis) {
+		initialBackoffMillis = initialMillis;
+		maxBackoffMillis = maxMillis;
+	}
+
+	/**
+	 * 
+	 * Connects to many devices at once and waits for the first attempt on each.
+	 * Devices that could not be connected keep being retried in the background
+	 * 
+	 * @param addresses The addresses of the devices, as host:port
+	 * @return The devices that are connected, as listed by PlatformTools.getDevices()
+	 * @throws InterruptedException When interrupted while waiting for the connections
+	 * 
+	 */
+	public List<Device> connectAll(List<String> addresses) throws InterruptedException {
+		CountDownLatch attempted = new CountDownLatch(addresses.size());
+		for (int i = 0; i < addresses.size(); i++) {
+			add(addresses.get(i), attempted);
+		}
+		attempted.await();
+
+		List<Device> connected = new ArrayList<Device>();
+		List<Device> devices = platformTools.getDevices();
+		for (int i = 0; i < devices.size(); i++) {
+			Target target = targets.get(devices.get(i).getSerial());
+			if (target != null && target.state.equals(STATE_CONNECTED)) {
+				connected.add(devices.get(i));
+			}
+		}
+		return connected;
+	}
+
+	/**
+	 * 
+	 * Starts connecting to a device in the background and keeps it connected.
+	 * Does nothing if the device is already managed
+	 * 
+	 * @param address The address of the device, as host:port
+	 * 
+	 */
+	public void add(String address) {
+		add(address, null);
+	}
+
+	/**
+	 * 
+	 * Stops managing a device and disconnects from it
+	 * 
+	 * @param address The address the device was added with
+	 * 
+	 */
+	public void remove(String address) {
+		Target target = targets.remove(normalize(address));
+		if (target != null) {
+			target.state = STATE_REMOVED;
+			platformTools.disconnect(target.address);
+		}
+	}
+
+	/**
+	 * 
+	 * A getter method for the state of a managed device
+	 * 
+	 * @param address The address the device was added with
+	 * @return One of the STATE_ constants, or null if the device is not managed
+	 * 
+	 */
+	public String getState(String address) {
+		Target target = targets.get(normalize(address));
+		return target == null ? null : target.state;
+	}
+
+	/**
+	 * 
+	 * A getter method for the states of every managed device
+	 * 
+	 * @return The state of each device, keyed by address
+	 * 
+	 */
+	public Map<String, String> getStates() {
+		Map<String, String> states = new HashMap<String, String>();
+		for (Target target : targets.values()) {
+			states.put(target.address, target.state);
+		}
+		return states;
+	}
+
+	/**
+	 * 
+	 * A getter method for the reason the last attempt on a device failed
+	 * 
+	 * @param address The address the device was added with
+	 * @return The reason reported by ADB, or null if the device is connected
+	 * 
+	 */
+	public String getLastError(String address) {
+		Target target = targets.get(normalize(address));
+		return target == null ? null : target.lastError;
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of times a dropped device was reconnected
+	 * 
+	 * @return The number of successful reconnections
+	 * 
+	 */
+	public int getReconnectCount() {
+		return reconnects.get();
+	}
+
+	/**
+	 * 
+	 * Stops probing and reconnecting. Devices stay connected to the ADB server,
+	 * and a connectAll() that is still waiting returns
+	 * 
+	 */
+	@Override
+	public synchronized void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		for (Target target : targets.values()) {
+			// Attempts still queued were dropped with the scheduler
+			target.attempted();
+		}
+		targets.clear();
+	}
+
+	private synchronized void add(String address, CountDownLatch attempted) {
+		if (scheduler == null) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(parallelism, runnable -> {
+				Thread thread = new Thread(runnable, "connection-manager");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.setRemoveOnCancelPolicy(true);
+			scheduler = executor;
+			startServer();
+		}
+
+		Target target = new Target(normalize(address), attempted);
+		if (targets.putIfAbsent(target.address, target) != null) {
+			target.attempted();
+			return;
+		}
+		scheduler.execute(() -> connect(target));
+	}
+
+	private void startServer() {
+		Command startServer = new Command(platformTools.getAdbPath(), "start-server");
+		startServer.exec();
+	}
+
+	private void connect(Target target) {
+		if (targets.get(target.address) != target) {
+			target.attempted();
+			return;
+		}
+		target.state = STATE_CONNECTING;
+		try {
+			String reply = AdbConnection.query("host:connect:" + target.address);
+			if (!reply.startsWith("connected to") && !reply.startsWith("already connected to")) {
+				throw new IOException(reply);
+			}
+			waitForDevice(target);
+
+			if (target.dropped) {
+				reconnects.incrementAndGet();
+			}
+			target.state = STATE_CONNECTED;
+			target.lastError = null;
+			target.backoffMillis = initialBackoffMillis;
+			target.dropped = false;
+			schedule(target, () -> probe(target), keepAliveSeconds * 1000L);
+		} catch (IOException e) {
+			target.state = STATE_WAITING;
+			target.lastError = e.getMessage();
+			disconnect(target);
+			schedule(target, () -> connect(target), jitter(target.backoffMillis));
+			target.backoffMillis = Math.min(maxBackoffMillis, target.backoffMillis * 2);
+		} finally {
+			target.attempted();
+		}
+	}
+
+	private void waitForDevice(Target target) throws IOException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		String state = "";
+		while (System.currentTimeMillis() < deadline) {
+			try {
+				state = AdbConnection.query("host-serial:" + target.address + ":get-state");
+				if (state.equals("device")) {
+					return;
+				}
+			} catch (IOException e) {
+				// The server lists the device once the transport is up
+				state = e.getMessage();
+			}
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for " + target.address);
+			}
+		}
+		throw new IOException(target.address + " did not come online: " + state);
+	}
+
+	private void probe(Target target) {
+		if (targets.get(target.address) != target) {
+			return;
+		}
+		Device device = new Device(target.address, "device", null, 0, platformTools.getAdbPath());
+		try (AdbConnection connection = AdbConnection.open(device, "shell:echo", timeoutMillis)) {
+			InputStream in = connection.getInputStream();
+			byte[] discard = new byte[64];
+			while (in.read(discard) >= 0) {
+				// Wait for the shell to exit so the whole round trip is checked
+			}
+			schedule(target, () -> probe(target), keepAliveSeconds * 1000L);
+		} catch (IOException e) {
+			target.state = STATE_WAITING;
+			target.lastError = e.getMessage();
+			target.dropped = true;
+			disconnect(target);
+			schedule(target, () -> connect(target), 0);
+		}
+	}
+
+	private void disconnect(Target target) {
+		try {
+			AdbConnection.query("host:disconnect:" + target.address);
+		} catch (IOException e) {
+			// The server had already forgotten the device
+		}
+	}
+
+	private synchronized void schedule(Target target, Runnable task, long delayMillis) {
+		if (scheduler != null && targets.get(target.address) == target) {
+			scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private long jitter(long delayMillis) {
+		return delayMillis / 2 + ThreadLocalRandom.current().nextLong(delayMillis / 2 + 1);
+	}
+
+	private static String normalize(String address) {
+		if (address.lastIndexOf(':') <= address.lastIndexOf(']')) {
+			return address + ":5555";
+		}
+		return address;
+	}
+
+	private class Target {
+		private String address;
+		private CountDownLatch attempted;
+		private volatile String state = STATE_CONNECTING;
+		private volatile String lastError;
+		private long backoffMillis = initialBackoffMillis;
+		private boolean dropped;
+
+		private Target(String setAddress, CountDownLatch setAttempted) {
+			address = setAddress;
+			attempted = setAttempted;
+		}
+
+		private synchronized void attempted() {
+			if (attempted != null) {
+				attempted.countDown();
+				attempted = null;
+			}
+		}
+	}
+}
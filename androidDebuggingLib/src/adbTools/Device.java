@@ -6,6 +6,7 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.IndexOutOfBoundsException;
 import java.lang.RuntimeException;
 
@@ -24,6 +25,8 @@ public class Device {
 	private String adbPath;
 	private String state;
 	private int transportId;
+	private String compression;
+	private TransferStats lastTransfer;
 
 	/**
 	 * 
@@ -198,7 +201,12 @@ public class Device {
 		if (file.exists()) {
 			Path path = Paths.get(file.getAbsolutePath());
 
-			Command pushFile = new Command(adbPath, "-s", serialNo, "push", file.getAbsolutePath());
+			String algorithm = negotiateCompression();
+			boolean compress = !algorithm.equals(TransferCompression.NONE) && TransferCompression.worthCompressing(file);
+			Command pushFile = new Command(adbPath, "-s", serialNo, "push");
+			addCompression(pushFile, algorithm, compress);
+			pushFile.addArg(file.getAbsolutePath());
+			long start = System.currentTimeMillis();
 			if (file.isDirectory()) {
 				pushFile.addArg(remotePath);
 				pushFile.exec();
@@ -206,6 +214,7 @@ public class Device {
 				pushFile.addArg(remotePath + "/" + path.getFileName());
 				pushFile.exec();
 			}
+			recordTransfer(pushFile, start, compress ? algorithm : TransferCompression.NONE, file);
 
 			for (int i = 0; i < pushFile.getOutput().size(); i++) {
 				String line = pushFile.getOutput().get(i);
@@ -231,16 +240,21 @@ public class Device {
 	public void pull(AndroidFile remotePath, String localPath) throws FileNotFoundException {
 		File local = new File(localPath);
 		if (local.exists()) {
-			Command pullFile = new Command(adbPath, "-s", serialNo, "pull", remotePath.toString());
+			String algorithm = negotiateCompression();
+			boolean compress = TransferCompression.worthCompressing(remotePath.getExtension());
+			Command pullFile = new Command(adbPath, "-s", serialNo, "pull");
+			addCompression(pullFile, algorithm, compress);
+			pullFile.addArg(remotePath.toString());
 			
 			if(remotePath.exists(this)) {
+				String destination = localPath;
 				if(local.isDirectory()) {
-					pullFile.addArg(localPath + "\\" + remotePath.getFileName());
-					pullFile.exec();
-				}else {
-					pullFile.addArg(localPath);
-					pullFile.exec();
+					destination = localPath + "\\" + remotePath.getFileName();
 				}
+				pullFile.addArg(destination);
+				long start = System.currentTimeMillis();
+				pullFile.exec();
+				recordTransfer(pullFile, start, compress ? algorithm : TransferCompression.NONE, new File(destination));
 				for(int i = 0; i < pullFile.getOutput().size(); i++) {
 					String line = pullFile.getOutput().get(i);
 					if (line.contains("No such file or directory")) {
@@ -268,20 +282,24 @@ public class Device {
 	public void pull(AndroidFile remotePath, String localPath, boolean preserve) throws FileNotFoundException {
 		File local = new File(localPath);
 		if (local.exists()) {
+			String algorithm = negotiateCompression();
+			boolean compress = TransferCompression.worthCompressing(remotePath.getExtension());
 			Command pullFile = new Command(adbPath, "-s", serialNo, "pull");
 			
 			if(preserve) {
 				pullFile.addArg("-a");
 			}
+			addCompression(pullFile, algorithm, compress);
 			
 			if(remotePath.exists(this)) {
+				String destination = localPath;
 				if(local.isDirectory()) {
-					pullFile.addArg(localPath + "\\" + remotePath.getFileName());
-					pullFile.exec();
-				}else {
-					pullFile.addArg(localPath);
-					pullFile.exec();
+					destination = localPath + "\\" + remotePath.getFileName();
 				}
+				pullFile.addArg(destination);
+				long start = System.currentTimeMillis();
+				pullFile.exec();
+				recordTransfer(pullFile, start, compress ? algorithm : TransferCompression.NONE, new File(destination));
 				for(int i = 0; i < pullFile.getOutput().size(); i++) {
 					String line = pullFile.getOutput().get(i);
 					if (line.contains("No such file or directory")) {
@@ -293,6 +311,24 @@ public class Device {
 		}
 	}
 	
+	/**
+	 * 
+	 * A method to copy many files from a device at once. Several sync connections are used,
+	 * each with many requests in flight, which is much faster than pulling files one by one
+	 * 
+	 * @param remoteFiles The files on the device
+	 * @param localPath A string path to the directory the files are to be placed
+	 * @return The finished transfer, which reports files and bytes per second and any failures
+	 * @throws FileNotFoundException When the local directory specified does not exist
+	 * @throws InterruptedException When interrupted while waiting for the transfer
+	 * 
+	 */
+	public BulkPull pull(List<AndroidFile> remoteFiles, String localPath) throws FileNotFoundException, InterruptedException {
+		BulkPull bulkPull = new BulkPull(this);
+		bulkPull.pull(remoteFiles, localPath);
+		return bulkPull;
+	}
+	
 	/**
 	 * 
 	 * A method to install packages (applications) to a device
@@ -429,4 +465,249 @@ public class Device {
 		shell.exec();
 		return shell.getOutput();
 	}
+
+	/**
+	 * 
+	 * A method for issuing long running shell commands to a device. Unlike shell(String)
+	 * this does not wait for the command to finish, so output can be read as it is produced
+	 * 
+	 * @param command The command to issue
+	 * @return The running adb process, whose input stream is the shell output
+	 * @throws IOException When adb could not be started
+	 * 
+	 */
+	public Process startShell(String command) throws IOException {
+		return adbCommand("shell", command).start();
+	}
+
+	/**
+	 * 
+	 * A method for issuing long running commands to a device whose output is binary.
+	 * Unlike startShell(String) the output is passed through exactly as the device wrote it
+	 * 
+	 * @param command The command to issue
+	 * @return The running adb process, whose input stream is the command output
+	 * @throws IOException When adb could not be started
+	 * 
+	 */
+	public Process startExecOut(String command) throws IOException {
+		return adbCommand("exec-out", command).start();
+	}
+
+	/**
+	 * 
+	 * Quotes a word for the device shell, so spaces and characters such as $ reach
+	 * the command unchanged
+	 * 
+	 * @param word The word to quote (such as a path or an instrumentation argument)
+	 * @return The word in single quotes, with any single quotes in it escaped
+	 * 
+	 */
+	static String quote(String word) {
+		return "'" + word.replace("'", "'\\''") + "'";
+	}
+
+	/**
+	 * 
+	 * A method to forward a local port to a socket on the device
+	 * 
+	 * @param localPort The port on this machine to listen on
+	 * @param remote The socket on the device (such as 'tcp:8080' or 'localabstract:name')
+	 * 
+	 */
+	public void forward(int localPort, String remote) {
+		Command forward = adbCommand("forward", "tcp:" + localPort, remote);
+		forward.exec();
+		checkForError(forward);
+	}
+
+	/**
+	 * 
+	 * A method to remove a port forward created with forward(int, String)
+	 * 
+	 * @param localPort The port on this machine that is being forwarded
+	 * 
+	 */
+	public void removeForward(int localPort) {
+		Command forward = adbCommand("forward", "--remove", "tcp:" + localPort);
+		forward.exec();
+		checkForError(forward);
+	}
+
+	/**
+	 * 
+	 * A method to forward a socket on the device to a local port
+	 * 
+	 * @param remote The socket on the device to listen on (such as 'tcp:8080' or 'localabstract:name')
+	 * @param localPort The port on this machine to connect to
+	 * 
+	 */
+	public void reverse(String remote, int localPort) {
+		Command reverse = adbCommand("reverse", remote, "tcp:" + localPort);
+		reverse.exec();
+		checkForError(reverse);
+	}
+
+	/**
+	 * 
+	 * A method to remove a reverse forward created with reverse(String, int)
+	 * 
+	 * @param remote The socket on the device that is being forwarded
+	 * 
+	 */
+	public void removeReverse(String remote) {
+		Command reverse = adbCommand("reverse", "--remove", remote);
+		reverse.exec();
+		checkForError(reverse);
+	}
+
+	/**
+	 * 
+	 * A method to forward a local port to a socket on the device without running "adb forward".
+	 * Connections are carried in this process, which also keeps byte and latency statistics
+	 * 
+	 * @param localPort The port on this machine to listen on, or 0 to pick a free port
+	 * @param remote The socket on the device (such as 'tcp:8080' or 'localabstract:name')
+	 * @return The running tunnel, which must be closed when it is no longer needed
+	 * @throws IOException When the local port could not be opened
+	 * 
+	 */
+	public PortTunnel tunnel(int localPort, String remote) throws IOException {
+		PortTunnel tunnel = new PortTunnel(this, remote);
+		tunnel.start(localPort);
+		return tunnel;
+	}
+
+	/**
+	 * 
+	 * A method to start sending input events (taps, swipes, keys and text) to the device.
+	 * Events are sent in batches over one session instead of one "input" process per event
+	 * 
+	 * @return The started injector, which must be closed when it is no longer needed
+	 * @throws IOException When the input session could not be started
+	 * 
+	 */
+	public InputInjector startInput() throws IOException {
+		InputInjector injector = new InputInjector(this);
+		injector.start();
+		return injector;
+	}
+
+	/**
+	 * 
+	 * A method to index the files under a directory on the device so that they can be
+	 * searched by extension, size, modification time or glob without asking the device
+	 * 
+	 * @param root The directory on the device to index (such as '/sdcard')
+	 * @return The built index, which can be brought up to date with refresh()
+	 * @throws IOException When adb could not be started
+	 * 
+	 */
+	public FileIndex buildIndex(String root) throws IOException {
+		FileIndex index = new FileIndex(this, root);
+		index.build();
+		return index;
+	}
+
+	/**
+	 * 
+	 * A getter method for the statistics of the last push or pull
+	 * 
+	 * @return The statistics of the last transfer, or null if there has not been one
+	 * 
+	 */
+	public TransferStats getLastTransfer() {
+		return lastTransfer;
+	}
+
+	/**
+	 * 
+	 * Finds the compression algorithm to use for transfers with this device. An
+	 * algorithm is kept once found; otherwise negotiation is tried again on the
+	 * next transfer, since the ADB server may not have been running yet
+	 * 
+	 * @return The algorithm, or TransferCompression.NONE if there is none to use
+	 * 
+	 */
+	private String negotiateCompression() {
+		if (compression != null) {
+			return compression;
+		}
+		String algorithm = TransferCompression.negotiate(this);
+		if (!algorithm.equals(TransferCompression.NONE)) {
+			compression = algorithm;
+		}
+		return algorithm;
+	}
+
+	/**
+	 * 
+	 * Adds the compression arguments to a push or pull. Nothing is added when the
+	 * device or this machine's ADB cannot compress
+	 * 
+	 * @param command   A push or pull command, before its paths are added
+	 * @param algorithm The negotiated algorithm
+	 * @param compress  Whether or not the data is worth compressing
+	 * 
+	 */
+	private void addCompression(Command command, String algorithm, boolean compress) {
+		if (algorithm.equals(TransferCompression.NONE)) {
+			return;
+		}
+		if (compress) {
+			command.addArgs("-z", algorithm);
+		} else {
+			command.addArg("-Z");
+		}
+	}
+
+	/**
+	 * 
+	 * Records the statistics of a finished push or pull
+	 * 
+	 * @param command   The executed command
+	 * @param start     The time the command was started, in milliseconds
+	 * @param algorithm The algorithm the data was compressed with, or TransferCompression.NONE
+	 * @param sample    The local copy of the data, sampled to estimate how well it compresses
+	 * 
+	 */
+	private void recordTransfer(Command command, long start, String algorithm, File sample) {
+		long elapsed = System.currentTimeMillis() - start;
+		if (algorithm.equals(TransferCompression.NONE)) {
+			lastTransfer = TransferStats.parse(command.getOutput(), TransferCompression.NONE, elapsed, 1);
+		} else {
+			lastTransfer = TransferStats.parse(command.getOutput(), algorithm, elapsed,
+					TransferCompression.estimateRatio(sample));
+		}
+	}
+
+	/**
+	 * 
+	 * Throws when the output of an adb command reports an error
+	 * 
+	 * @param command An executed command
+	 * 
+	 */
+	private void checkForError(Command command) {
+		for (int i = 0; i < command.getOutput().size(); i++) {
+			String line = command.getOutput(i);
+			if (line.contains("error:")) {
+				throw new RuntimeException(line.substring(line.indexOf("error:") + 6).trim());
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * Builds an adb command targeting this device
+	 * 
+	 * @param args The arguments to place after "adb -s serial"
+	 * @return A command ready to be executed or started
+	 * 
+	 */
+	Command adbCommand(String... args) {
+		Command command = new Command(adbPath, "-s", serialNo);
+		command.addArgs(args);
+		return command;
+	}
 }
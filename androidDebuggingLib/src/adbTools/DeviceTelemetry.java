@@ -0,0 +1,244 @@
+package adbTools;
+
+/**
+ * 
+ * Holds the telemetry collected from one device by a TelemetrySampler. Every
+ * metric is kept in its own RingBuffer with one sample per sampling interval
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class DeviceTelemetry {
+	static final String END_OF_SAMPLE = "END_OF_SAMPLE";
+
+	private Device device;
+	private RingBuffer cpu;
+	private RingBuffer memoryUsed;
+	private RingBuffer batteryLevel;
+	private RingBuffer batteryTemperature;
+	private RingBuffer frames;
+	private RingBuffer jankyFrames;
+
+	private long[] numbers = new long[8];
+	private long lastCpuTotal = -1;
+	private long lastCpuIdle = -1;
+	private long lastFrames = -1;
+	private long lastJanky = -1;
+
+	private double sampleCpu = Double.NaN;
+	private long memTotal = -1;
+	private long memAvailable = -1;
+	private double sampleLevel = Double.NaN;
+	private double sampleTemperature = Double.NaN;
+	private double sampleFrames = Double.NaN;
+	private double sampleJanky = Double.NaN;
+
+	/**
+	 * 
+	 * Class constructor for the telemetry of a device
+	 * 
+	 * @param setDevice The device the telemetry is collected from
+	 * @param capacity  The number of samples kept for every metric
+	 * 
+	 */
+	public DeviceTelemetry(Device setDevice, int capacity) {
+		device = setDevice;
+		cpu = new RingBuffer(capacity);
+		memoryUsed = new RingBuffer(capacity);
+		batteryLevel = new RingBuffer(capacity);
+		batteryTemperature = new RingBuffer(capacity);
+		frames = new RingBuffer(capacity);
+		jankyFrames = new RingBuffer(capacity);
+	}
+
+	/**
+	 * 
+	 * A getter method for the device the telemetry is collected from
+	 * 
+	 * @return The sampled device
+	 * 
+	 */
+	public Device getDevice() {
+		return device;
+	}
+
+	/**
+	 * 
+	 * A getter method for the CPU usage samples
+	 * 
+	 * @return The percentage of CPU time that was not idle during each interval
+	 * 
+	 */
+	public RingBuffer getCpu() {
+		return cpu;
+	}
+
+	/**
+	 * 
+	 * A getter method for the memory usage samples
+	 * 
+	 * @return The memory in use (MemTotal minus MemAvailable) in kB
+	 * 
+	 */
+	public RingBuffer getMemoryUsed() {
+		return memoryUsed;
+	}
+
+	/**
+	 * 
+	 * A getter method for the battery level samples
+	 * 
+	 * @return The battery level as reported by "dumpsys battery"
+	 * 
+	 */
+	public RingBuffer getBatteryLevel() {
+		return batteryLevel;
+	}
+
+	/**
+	 * 
+	 * A getter method for the battery temperature samples
+	 * 
+	 * @return The battery temperature in degrees Celsius
+	 * 
+	 */
+	public RingBuffer getBatteryTemperature() {
+		return batteryTemperature;
+	}
+
+	/**
+	 * 
+	 * A getter method for the rendered frame samples. Only filled in when the
+	 * sampler has a package set
+	 * 
+	 * @return The number of frames rendered during each interval
+	 * 
+	 */
+	public RingBuffer getFrames() {
+		return frames;
+	}
+
+	/**
+	 * 
+	 * A getter method for the janky frame samples. Only filled in when the sampler
+	 * has a package set
+	 * 
+	 * @return The number of janky frames during each interval
+	 * 
+	 */
+	public RingBuffer getJankyFrames() {
+		return jankyFrames;
+	}
+
+	/**
+	 * 
+	 * Parses a line of output from the sampling loop on the device
+	 * 
+	 * @param line A line of output, without the line terminator
+	 * 
+	 */
+	void parseLine(String line) {
+		String trimmed = line.trim();
+		if (trimmed.equals(END_OF_SAMPLE)) {
+			endSample(System.currentTimeMillis());
+		} else if (trimmed.startsWith("cpu ")) {
+			int n = parseNumbers(trimmed, 3);
+			if (n >= 4) {
+				long total = 0;
+				for (int i = 0; i < n; i++) {
+					total += numbers[i];
+				}
+				long idle = numbers[3] + (n > 4 ? numbers[4] : 0);
+				if (lastCpuTotal >= 0 && total > lastCpuTotal) {
+					sampleCpu = 100.0 * (1.0 - (double) (idle - lastCpuIdle) / (total - lastCpuTotal));
+				}
+				lastCpuTotal = total;
+				lastCpuIdle = idle;
+			}
+		} else if (trimmed.startsWith("MemTotal:")) {
+			memTotal = parseFirst(trimmed, 9);
+		} else if (trimmed.startsWith("MemAvailable:")) {
+			memAvailable = parseFirst(trimmed, 13);
+		} else if (trimmed.startsWith("level:")) {
+			long level = parseFirst(trimmed, 6);
+			if (level >= 0) {
+				sampleLevel = level;
+			}
+		} else if (trimmed.startsWith("temperature:")) {
+			long temperature = parseFirst(trimmed, 12);
+			if (temperature >= 0) {
+				sampleTemperature = temperature / 10.0;
+			}
+		} else if (trimmed.startsWith("Total frames rendered:")) {
+			long total = parseFirst(trimmed, 22);
+			if (lastFrames >= 0 && total >= lastFrames) {
+				sampleFrames = total - lastFrames;
+			}
+			lastFrames = total;
+		} else if (trimmed.startsWith("Janky frames:")) {
+			long janky = parseFirst(trimmed, 13);
+			if (lastJanky >= 0 && janky >= lastJanky) {
+				sampleJanky = janky - lastJanky;
+			}
+			lastJanky = janky;
+		}
+	}
+
+	private void endSample(long time) {
+		if (!Double.isNaN(sampleCpu)) {
+			cpu.add(time, sampleCpu);
+		}
+		if (memTotal >= 0 && memAvailable >= 0) {
+			memoryUsed.add(time, memTotal - memAvailable);
+		}
+		if (!Double.isNaN(sampleLevel)) {
+			batteryLevel.add(time, sampleLevel);
+		}
+		if (!Double.isNaN(sampleTemperature)) {
+			batteryTemperature.add(time, sampleTemperature);
+		}
+		if (!Double.isNaN(sampleFrames)) {
+			frames.add(time, sampleFrames);
+		}
+		if (!Double.isNaN(sampleJanky)) {
+			jankyFrames.add(time, sampleJanky);
+		}
+
+		sampleCpu = Double.NaN;
+		memTotal = -1;
+		memAvailable = -1;
+		sampleLevel = Double.NaN;
+		sampleTemperature = Double.NaN;
+		sampleFrames = Double.NaN;
+		sampleJanky = Double.NaN;
+	}
+
+	private long parseFirst(String line, int from) {
+		if (parseNumbers(line, from) == 0) {
+			return -1;
+		}
+		return numbers[0];
+	}
+
+	private int parseNumbers(String line, int from) {
+		int n = 0;
+		int i = from;
+		while (i < line.length() && n < numbers.length) {
+			char c = line.charAt(i);
+			if (c >= '0' && c <= '9') {
+				long value = 0;
+				while (i < line.length() && line.charAt(i) >= '0' && line.charAt(i) <= '9') {
+					value = value * 10 + (line.charAt(i) - '0');
+					i++;
+				}
+				numbers[n++] = value;
+			} else if (c == ' ' || c == '\t') {
+				i++;
+			} else {
+				break;
+			}
+		}
+		return n;
+	}
+}
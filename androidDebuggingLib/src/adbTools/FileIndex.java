@@ -0,0 +1,499 @@
+package adbTools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 
+ * An in-memory index of the files under a directory on a device, so that questions
+ * such as "every .log over 10 MB" can be answered without asking the device. The
+ * index is built by one recursive scan and refreshed by comparing directory
+ * modification times, relisting only the directories that changed. Files that
+ * are rewritten in place do not change their directory, so their size and time
+ * are only updated by build()
+ * 
+ * Paths are kept as a tree of shared name segments, with sizes and times held in
+ * primitive arrays indexed by node
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class FileIndex {
+	private static final String STAT = " -exec stat -c '%s %Y %f %n' {} + 2>/dev/null";
+	private static final String DIRECTORY_MARKER = ">>> ";
+	private static final int MODE_TYPE = 0xF000;
+	private static final int MODE_DIRECTORY = 0x4000;
+	private static final byte TYPE_NONE = 0;
+	private static final byte TYPE_FILE = 1;
+	private static final byte TYPE_DIRECTORY = 2;
+	private static final int RELIST_BATCH = 32;
+
+	private Device device;
+	private String root;
+	private String deviceRoot;
+
+	private int count = 0;
+	private int live = 0;
+	private String[] names = new String[1024];
+	private int[] parents = new int[1024];
+	private int[] firstChild = new int[1024];
+	private int[] nextSibling = new int[1024];
+	private long[] sizes = new long[1024];
+	private long[] mtimes = new long[1024];
+	private byte[] types = new byte[1024];
+	private Map<String, Integer> directories = new HashMap<String, Integer>();
+	private Map<String, String> namePool = new HashMap<String, String>();
+
+	/**
+	 * 
+	 * Class constructor for an index. The index is empty until build() is called
+	 * 
+	 * @param setDevice The device to index
+	 * @param setRoot   The directory on the device to index (such as '/sdcard')
+	 * 
+	 */
+	public FileIndex(Device setDevice, String setRoot) {
+		device = setDevice;
+		root = setRoot.length() > 1 && setRoot.endsWith("/") ? setRoot.substring(0, setRoot.length() - 1) : setRoot;
+	}
+
+	/**
+	 * 
+	 * Scans the whole directory on the device, replacing anything already indexed.
+	 * A root that is a symbolic link (such as /sdcard) is scanned through its real
+	 * path, but paths in the index still start with the root as it was given
+	 * 
+	 * @throws IOException When adb could not be started
+	 * 
+	 */
+	public synchronized void build() throws IOException {
+		clear();
+		resolveRoot();
+		readShell("find " + deviceRoot + STAT, line -> {
+			long[] stat = new long[3];
+			String path = parseStat(line, stat);
+			if (path != null) {
+				add(path, stat[0], stat[1], (int) stat[2]);
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * Brings the index up to date by relisting only the directories whose
+	 * modification time changed since they were last listed
+	 * 
+	 * @return The number of directories that were relisted
+	 * @throws IOException When adb could not be started
+	 * 
+	 */
+	public synchronized int refresh() throws IOException {
+		if (count == 0) {
+			build();
+			return directories.size();
+		}
+
+		resolveRoot();
+		Map<String, Long> current = new HashMap<String, Long>();
+		readShell("find " + deviceRoot + " -type d -exec stat -c '%Y %n' {} + 2>/dev/null", line -> {
+			int space = line.indexOf(' ');
+			if (space > 0) {
+				try {
+					current.put(fromDevice(line.substring(space + 1)), Long.parseLong(line.substring(0, space)));
+				} catch (NumberFormatException e) {
+					// Not a line printed by stat
+				}
+			}
+		});
+
+		List<String> indexed = new ArrayList<String>(directories.keySet());
+		for (int i = 0; i < indexed.size(); i++) {
+			Integer node = directories.get(indexed.get(i));
+			if (node != null && !current.containsKey(indexed.get(i))) {
+				remove(node);
+			}
+		}
+
+		List<String> changed = new ArrayList<String>();
+		for (Map.Entry<String, Long> directory : current.entrySet()) {
+			Integer node = directories.get(directory.getKey());
+			if (node == null || mtimes[node] != directory.getValue()) {
+				changed.add(directory.getKey());
+			}
+		}
+		// Parents are relisted first so that new directories exist before their own listing
+		changed.sort(Comparator.comparingInt(String::length));
+
+		for (int start = 0; start < changed.size(); start += RELIST_BATCH) {
+			int end = Math.min(changed.size(), start + RELIST_BATCH);
+			StringBuilder command = new StringBuilder();
+			for (int i = start; i < end; i++) {
+				String directory = changed.get(i);
+				command.append("echo \"").append(DIRECTORY_MARKER).append(directory).append("\"; ");
+				command.append("find \"").append(toDevice(directory)).append("\" -mindepth 1 -maxdepth 1").append(STAT);
+				command.append("; ");
+			}
+			relist(command.toString(), current);
+		}
+		return changed.size();
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of indexed files and directories
+	 * 
+	 * @return The number of entries in the index, including the root
+	 * 
+	 */
+	public synchronized int size() {
+		return live;
+	}
+
+	/**
+	 * 
+	 * Searches the index
+	 * 
+	 * @param query The conditions to match
+	 * @return Every matching file, with its name, extension and type already known
+	 * 
+	 */
+	public synchronized List<AndroidFile> find(FileQuery query) {
+		List<AndroidFile> found = new ArrayList<AndroidFile>();
+		for (int i = 0; i < count; i++) {
+			if (types[i] == TYPE_NONE) {
+				continue;
+			}
+			boolean isFile = types[i] == TYPE_FILE;
+			String extension = isFile ? extensionOf(names[i]) : null;
+			if (query.matches(isFile, extension, sizes[i], mtimes[i])) {
+				String path = pathOf(i);
+				if (query.matchesPath(path)) {
+					found.add(new AndroidFile(path, names[i], extension, isFile));
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * 
+	 * Searches the index for files with any of the given extensions
+	 * 
+	 * @param extensions Extensions including the dot (such as '.apk' or '.log')
+	 * @return Every matching file
+	 * 
+	 */
+	public List<AndroidFile> findByExtension(String... extensions) {
+		FileQuery query = new FileQuery();
+		query.setExtensions(extensions);
+		return find(query);
+	}
+
+	/**
+	 * 
+	 * A getter method for the indexed size of a file
+	 * 
+	 * @param file The file on the device
+	 * @return The size in bytes, or -1 if the file is not in the index
+	 * 
+	 */
+	public synchronized long getSize(AndroidFile file) {
+		int node = lookup(file.toString());
+		return node < 0 ? -1 : sizes[node];
+	}
+
+	/**
+	 * 
+	 * A getter method for the indexed modification time of a file
+	 * 
+	 * @param file The file on the device
+	 * @return The time in seconds since the epoch, or -1 if the file is not in the index
+	 * 
+	 */
+	public synchronized long getModifiedTime(AndroidFile file) {
+		int node = lookup(file.toString());
+		return node < 0 ? -1 : mtimes[node];
+	}
+
+	private void relist(String command, Map<String, Long> directoryTimes) throws IOException {
+		Map<String, Integer> children = new HashMap<String, Integer>();
+		int[] listing = { -1 };
+
+		readShell(command, line -> {
+			if (line.startsWith(DIRECTORY_MARKER)) {
+				removeUnlisted(listing[0], children);
+				String directory = line.substring(DIRECTORY_MARKER.length());
+				Long mtime = directoryTimes.get(directory);
+				listing[0] = add(directory, 0, mtime == null ? 0 : mtime, MODE_DIRECTORY);
+				children.clear();
+				for (int child = firstChild[listing[0]]; child >= 0; child = nextSibling[child]) {
+					children.put(names[child], child);
+				}
+				return;
+			}
+
+			long[] stat = new long[3];
+			String path = parseStat(line, stat);
+			if (path == null || listing[0] < 0) {
+				return;
+			}
+			Integer node = children.remove(path.substring(path.lastIndexOf('/') + 1));
+			byte type = typeOf((int) stat[2]);
+			if (node != null && types[node] == type) {
+				sizes[node] = stat[0];
+				if (type == TYPE_FILE) {
+					mtimes[node] = stat[1];
+				}
+			} else {
+				if (node != null) {
+					remove(node);
+				}
+				int added = add(path, stat[0], stat[1], (int) stat[2]);
+				if (type == TYPE_DIRECTORY) {
+					// Forces the listing of a new directory, which is relisted later in this refresh
+					mtimes[added] = -1;
+				}
+			}
+		});
+		removeUnlisted(listing[0], children);
+	}
+
+	private void removeUnlisted(int directory, Map<String, Integer> children) {
+		if (directory < 0) {
+			return;
+		}
+		for (Integer child : children.values()) {
+			remove(child);
+		}
+		children.clear();
+	}
+
+	private int add(String path, long size, long mtime, int mode) {
+		byte type = typeOf(mode);
+		if (path.equals(root)) {
+			if (count == 0) {
+				newNode(-1, root, size, mtime, TYPE_DIRECTORY);
+				directories.put(root, 0);
+			}
+			mtimes[0] = mtime;
+			return 0;
+		}
+
+		Integer existing = type == TYPE_DIRECTORY ? directories.get(path) : null;
+		if (existing != null) {
+			mtimes[existing] = mtime;
+			return existing;
+		}
+
+		String parentPath = parentOf(path);
+		Integer parent = directories.get(parentPath);
+		if (parent == null) {
+			parent = add(parentPath, 0, 0, MODE_DIRECTORY);
+		}
+		int node = newNode(parent, intern(path.substring(path.lastIndexOf('/') + 1)), size, mtime, type);
+		if (type == TYPE_DIRECTORY) {
+			directories.put(path, node);
+		}
+		return node;
+	}
+
+	private int newNode(int parent, String name, long size, long mtime, byte type) {
+		if (count == names.length) {
+			int capacity = names.length * 2;
+			names = Arrays.copyOf(names, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			nextSibling = Arrays.copyOf(nextSibling, capacity);
+			sizes = Arrays.copyOf(sizes, capacity);
+			mtimes = Arrays.copyOf(mtimes, capacity);
+			types = Arrays.copyOf(types, capacity);
+		}
+		int node = count++;
+		names[node] = name;
+		parents[node] = parent;
+		firstChild[node] = -1;
+		sizes[node] = size;
+		mtimes[node] = mtime;
+		types[node] = type;
+		if (parent >= 0) {
+			nextSibling[node] = firstChild[parent];
+			firstChild[parent] = node;
+		} else {
+			nextSibling[node] = -1;
+		}
+		live++;
+		return node;
+	}
+
+	private void remove(int node) {
+		if (types[node] == TYPE_NONE) {
+			return;
+		}
+		int parent = parents[node];
+		if (parent >= 0) {
+			if (firstChild[parent] == node) {
+				firstChild[parent] = nextSibling[node];
+			} else {
+				int previous = firstChild[parent];
+				while (previous >= 0 && nextSibling[previous] != node) {
+					previous = nextSibling[previous];
+				}
+				if (previous >= 0) {
+					nextSibling[previous] = nextSibling[node];
+				}
+			}
+		}
+
+		List<Integer> pending = new ArrayList<Integer>();
+		pending.add(node);
+		while (pending.size() > 0) {
+			int next = pending.remove(pending.size() - 1);
+			if (types[next] == TYPE_DIRECTORY) {
+				directories.remove(pathOf(next));
+				for (int child = firstChild[next]; child >= 0; child = nextSibling[child]) {
+					pending.add(child);
+				}
+			}
+			types[next] = TYPE_NONE;
+			live--;
+		}
+	}
+
+	private int lookup(String path) {
+		if (path.length() > 1 && path.endsWith("/")) {
+			path = path.substring(0, path.length() - 1);
+		}
+		Integer directory = directories.get(path);
+		if (directory != null) {
+			return directory;
+		}
+		Integer parent = directories.get(parentOf(path));
+		if (parent == null) {
+			return -1;
+		}
+		String name = path.substring(path.lastIndexOf('/') + 1);
+		for (int child = firstChild[parent]; child >= 0; child = nextSibling[child]) {
+			if (names[child].equals(name)) {
+				return child;
+			}
+		}
+		return -1;
+	}
+
+	private String pathOf(int node) {
+		if (node == 0) {
+			return root;
+		}
+		List<String> segments = new ArrayList<String>();
+		for (int i = node; i > 0; i = parents[i]) {
+			segments.add(names[i]);
+		}
+		StringBuilder path = new StringBuilder(root.equals("/") ? "" : root);
+		for (int i = segments.size() - 1; i >= 0; i--) {
+			path.append('/').append(segments.get(i));
+		}
+		return path.toString();
+	}
+
+	private String parentOf(String path) {
+		int slash = path.lastIndexOf('/');
+		return slash <= 0 ? "/" : path.substring(0, slash);
+	}
+
+	private String intern(String name) {
+		String pooled = namePool.putIfAbsent(name, name);
+		return pooled == null ? name : pooled;
+	}
+
+	private void clear() {
+		count = 0;
+		live = 0;
+		directories.clear();
+		namePool.clear();
+	}
+
+	private byte typeOf(int mode) {
+		return (mode & MODE_TYPE) == MODE_DIRECTORY ? TYPE_DIRECTORY : TYPE_FILE;
+	}
+
+	// Finds the extension of a name the same way AndroidFile does, without a regex
+	private static String extensionOf(String name) {
+		int dot = name.lastIndexOf('.');
+		if (dot < 0 || dot == name.length() - 1) {
+			return null;
+		}
+		for (int i = dot + 1; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean word = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+			if (!word) {
+				return null;
+			}
+		}
+		return name.substring(dot);
+	}
+
+	// Parses a line printed by stat -c '%s %Y %f %n' into size, time and mode
+	private String parseStat(String line, long[] stat) {
+		int first = line.indexOf(' ');
+		int second = first < 0 ? -1 : line.indexOf(' ', first + 1);
+		int third = second < 0 ? -1 : line.indexOf(' ', second + 1);
+		if (third < 0 || !line.startsWith(deviceRoot, third + 1)) {
+			return null;
+		}
+		try {
+			stat[0] = Long.parseLong(line.substring(0, first));
+			stat[1] = Long.parseLong(line.substring(first + 1, second));
+			stat[2] = Long.parseLong(line.substring(second + 1, third), 16);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return fromDevice(line.substring(third + 1));
+	}
+
+	// find does not descend into a symbolic link, so the root is listed through its real path
+	private void resolveRoot() throws IOException {
+		if (deviceRoot != null) {
+			return;
+		}
+		List<String> resolved = new ArrayList<String>();
+		readShell("readlink -f \"" + root + "\"", resolved::add);
+		deviceRoot = resolved.isEmpty() || !resolved.get(0).startsWith("/") ? root : resolved.get(0);
+	}
+
+	private String toDevice(String path) {
+		return deviceRoot.equals(root) ? path : deviceRoot + path.substring(root.length());
+	}
+
+	private String fromDevice(String path) {
+		if (deviceRoot.equals(root) || !path.startsWith(deviceRoot)) {
+			return path;
+		}
+		String rest = path.substring(deviceRoot.length());
+		return rest.isEmpty() || rest.startsWith("/") ? root + rest : path;
+	}
+
+	private void readShell(String command, Consumer<String> handler) throws IOException {
+		Process process = device.startShell(command);
+		BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+		try {
+			String line = out.readLine();
+			while (line != null) {
+				handler.accept(line);
+				line = out.readLine();
+			}
+		} finally {
+			out.close();
+			process.destroy();
+		}
+	}
+}
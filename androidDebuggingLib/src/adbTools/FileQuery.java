@@ -0,0 +1,154 @@
+package adbTools;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+
+/**
+ * 
+ * A set of conditions used to search a FileIndex. Every condition that is set
+ * must match; conditions that are not set match everything
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class FileQuery {
+	private String[] extensions;
+	private long minSize = -1;
+	private long maxSize = -1;
+	private long modifiedAfter = -1;
+	private long modifiedBefore = -1;
+	private PathMatcher glob;
+	private boolean filesOnly = true;
+
+	/**
+	 * 
+	 * Sets the extensions to match, ignoring case
+	 * 
+	 * @param toSet Extensions including the dot (such as '.apk' or '.log')
+	 * 
+	 */
+	public void setExtensions(String... toSet) {
+		extensions = toSet;
+	}
+
+	/**
+	 * 
+	 * Sets the smallest size to match
+	 * 
+	 * @param toSet The minimum size in bytes
+	 * 
+	 */
+	public void setMinSize(long toSet) {
+		minSize = toSet;
+	}
+
+	/**
+	 * 
+	 * Sets the largest size to match
+	 * 
+	 * @param toSet The maximum size in bytes
+	 * 
+	 */
+	public void setMaxSize(long toSet) {
+		maxSize = toSet;
+	}
+
+	/**
+	 * 
+	 * Sets the earliest modification time to match
+	 * 
+	 * @param toSet The time in seconds since the epoch
+	 * 
+	 */
+	public void setModifiedAfter(long toSet) {
+		modifiedAfter = toSet;
+	}
+
+	/**
+	 * 
+	 * Sets the latest modification time to match
+	 * 
+	 * @param toSet The time in seconds since the epoch
+	 * 
+	 */
+	public void setModifiedBefore(long toSet) {
+		modifiedBefore = toSet;
+	}
+
+	/**
+	 * 
+	 * Sets a glob pattern the full device path has to match
+	 * 
+	 * @param toSet A glob pattern (such as '/sdcard/DCIM/**.jpg')
+	 * 
+	 */
+	public void setGlob(String toSet) {
+		glob = FileSystems.getDefault().getPathMatcher("glob:" + toSet);
+	}
+
+	/**
+	 * 
+	 * Sets whether directories can match. Only files match by default
+	 * 
+	 * @param toSet True to match only files, false to also match directories
+	 * 
+	 */
+	public void setFilesOnly(boolean toSet) {
+		filesOnly = toSet;
+	}
+
+	/**
+	 * 
+	 * Checks the conditions that do not need the full path
+	 * 
+	 * @param isFile    Whether or not the entry is a file
+	 * @param extension The extension of the entry, or null
+	 * @param size      The size of the entry in bytes
+	 * @param mtime     The modification time of the entry in seconds since the epoch
+	 * @return Whether or not the entry matches
+	 * 
+	 */
+	boolean matches(boolean isFile, String extension, long size, long mtime) {
+		if (filesOnly && !isFile) {
+			return false;
+		}
+		if (minSize >= 0 && size < minSize) {
+			return false;
+		}
+		if (maxSize >= 0 && size > maxSize) {
+			return false;
+		}
+		if (modifiedAfter >= 0 && mtime < modifiedAfter) {
+			return false;
+		}
+		if (modifiedBefore >= 0 && mtime > modifiedBefore) {
+			return false;
+		}
+		if (extensions != null) {
+			if (extension == null) {
+				return false;
+			}
+			for (int i = 0; i < extensions.length; i++) {
+				if (extensions[i].equalsIgnoreCase(extension)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * Checks the glob pattern against a full path
+	 * 
+	 * @param path The full path of the entry on the device
+	 * @return Whether or not the path matches
+	 * 
+	 */
+	boolean matchesPath(String path) {
+		return glob == null || glob.matches(Paths.get(path));
+	}
+}
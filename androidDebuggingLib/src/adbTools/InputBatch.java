@@ -0,0 +1,146 @@
+package adbTools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * A sequence of input events (taps, swipes, key presses and text) to be sent to
+ * a device in one go by an InputInjector
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class InputBatch {
+	public static final int KEYCODE_HOME = 3;
+	public static final int KEYCODE_BACK = 4;
+	public static final int KEYCODE_ENTER = 66;
+	public static final int KEYCODE_SPACE = 62;
+
+	private static final int SWIPE_STEP_MILLIS = 16;
+
+	private List<String> commands = new ArrayList<String>();
+	private int eventCount = 0;
+	private int delayMillis = 0;
+
+	/**
+	 * 
+	 * Sets a pause that is added after every following event
+	 * 
+	 * @param toSet The pause in milliseconds, 0 for none
+	 * 
+	 */
+	public void setDelay(int toSet) {
+		delayMillis = Math.max(0, toSet);
+	}
+
+	/**
+	 * 
+	 * Adds a tap
+	 * 
+	 * @param x The horizontal position in pixels
+	 * @param y The vertical position in pixels
+	 * 
+	 */
+	public void tap(int x, int y) {
+		commands.add("tap " + x + " " + y);
+		endEvent();
+	}
+
+	/**
+	 * 
+	 * Adds a swipe in a straight line
+	 * 
+	 * @param x1       The horizontal start position in pixels
+	 * @param y1       The vertical start position in pixels
+	 * @param x2       The horizontal end position in pixels
+	 * @param y2       The vertical end position in pixels
+	 * @param duration The time the swipe takes in milliseconds
+	 * 
+	 */
+	public void swipe(int x1, int y1, int x2, int y2, int duration) {
+		int steps = Math.max(1, duration / SWIPE_STEP_MILLIS);
+		commands.add("touch down " + x1 + " " + y1);
+		for (int i = 1; i <= steps; i++) {
+			if (duration > 0) {
+				commands.add("sleep " + (duration / steps));
+			}
+			commands.add("touch move " + (x1 + (x2 - x1) * i / steps) + " " + (y1 + (y2 - y1) * i / steps));
+		}
+		commands.add("touch up " + x2 + " " + y2);
+		endEvent();
+	}
+
+	/**
+	 * 
+	 * Adds a key press
+	 * 
+	 * @param keyCode The Android key code (such as KEYCODE_BACK)
+	 * 
+	 */
+	public void key(int keyCode) {
+		commands.add("press " + keyCode);
+		endEvent();
+	}
+
+	/**
+	 * 
+	 * Adds text typed into the focused view
+	 * 
+	 * @param text The text to type
+	 * 
+	 */
+	public void text(String text) {
+		String[] words = text.split(" ", -1);
+		for (int i = 0; i < words.length; i++) {
+			if (i > 0) {
+				commands.add("press " + KEYCODE_SPACE);
+			}
+			if (words[i].length() > 0) {
+				commands.add("type " + words[i]);
+			}
+		}
+		endEvent();
+	}
+
+	/**
+	 * 
+	 * Adds a pause between events
+	 * 
+	 * @param millis The pause in milliseconds
+	 * 
+	 */
+	public void pause(int millis) {
+		commands.add("sleep " + millis);
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of events in the batch
+	 * 
+	 * @return The number of taps, swipes, key presses and texts added
+	 * 
+	 */
+	public int getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * 
+	 * A getter method for the commands sent for this batch
+	 * 
+	 * @return The monkey commands, one per line
+	 * 
+	 */
+	List<String> getCommands() {
+		return commands;
+	}
+
+	private void endEvent() {
+		eventCount++;
+		if (delayMillis > 0) {
+			commands.add("sleep " + delayMillis);
+		}
+	}
+}
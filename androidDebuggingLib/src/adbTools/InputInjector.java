@@ -0,0 +1,224 @@
+package adbTools;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 
+ * Sends input events to a device at a high rate. Instead of starting an "input"
+ * process for every event, a single "monkey --port" session is kept running on
+ * the device and events are written to it over a PortTunnel. Commands are
+ * pipelined, so a batch costs about one round trip per window of commands
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class InputInjector implements Closeable {
+	private static final int DEFAULT_DEVICE_PORT = 1080;
+	private static final int WINDOW = 256;
+	private static final long STARTUP_TIMEOUT_MILLIS = 10000;
+
+	private Device device;
+	private int devicePort = DEFAULT_DEVICE_PORT;
+	private Process monkey;
+	private PortTunnel tunnel;
+	private Socket socket;
+	private OutputStream out;
+	private BufferedReader in;
+
+	private long eventsSent = 0;
+	private long lastBatchMillis = 0;
+	private int lastBatchEvents = 0;
+
+	/**
+	 * 
+	 * Class constructor for an input injector. No session is opened until start()
+	 * 
+	 * @param setDevice The device to send input to
+	 * 
+	 */
+	public InputInjector(Device setDevice) {
+		device = setDevice;
+	}
+
+	/**
+	 * 
+	 * Sets the port the monkey session listens on, on the device
+	 * 
+	 * @param toSet A free port on the device
+	 * 
+	 */
+	public void setDevicePort(int toSet) {
+		devicePort = toSet;
+	}
+
+	/**
+	 * 
+	 * Starts the monkey session on the device and connects to it
+	 * 
+	 * @throws IOException When the session could not be started or connected to in time
+	 * 
+	 */
+	public void start() throws IOException {
+		monkey = device.startShell("monkey --port " + devicePort);
+		tunnel = device.tunnel(0, "tcp:" + devicePort);
+
+		long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+		while (true) {
+			IOException failure = null;
+			try {
+				connect();
+				socket.setSoTimeout((int) STARTUP_TIMEOUT_MILLIS);
+				write("wake");
+				if ("OK".equals(in.readLine())) {
+					socket.setSoTimeout(0);
+					return;
+				}
+			} catch (IOException e) {
+				failure = e;
+			}
+			disconnect();
+			if (System.currentTimeMillis() > deadline) {
+				close();
+				throw new IOException("The monkey session on the device did not start", failure);
+			}
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new IOException("Interrupted while waiting for the monkey session");
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * Sends a batch of events and waits for the device to acknowledge them
+	 * 
+	 * @param batch The events to send
+	 * @return The number of commands the device rejected, 0 when every event was applied
+	 * @throws IOException When the session was lost
+	 * 
+	 */
+	public synchronized int send(InputBatch batch) throws IOException {
+		List<String> commands = batch.getCommands();
+		long started = System.nanoTime();
+		int errors = 0;
+
+		for (int start = 0; start < commands.size(); start += WINDOW) {
+			int end = Math.min(commands.size(), start + WINDOW);
+			StringBuilder window = new StringBuilder();
+			for (int i = start; i < end; i++) {
+				window.append(commands.get(i)).append('\n');
+			}
+			out.write(window.toString().getBytes(StandardCharsets.UTF_8));
+			out.flush();
+
+			for (int i = start; i < end; i++) {
+				String reply = in.readLine();
+				if (reply == null) {
+					throw new IOException("The monkey session on the device was closed");
+				} else if (!reply.startsWith("OK")) {
+					errors++;
+				}
+			}
+		}
+
+		lastBatchMillis = (System.nanoTime() - started) / 1000000;
+		lastBatchEvents = batch.getEventCount();
+		eventsSent += batch.getEventCount();
+		return errors;
+	}
+
+	/**
+	 * 
+	 * A getter method for the events sent since the session started
+	 * 
+	 * @return The number of events acknowledged by the device
+	 * 
+	 */
+	public long getEventsSent() {
+		return eventsSent;
+	}
+
+	/**
+	 * 
+	 * A getter method for the rate achieved by the last batch
+	 * 
+	 * @return The events of the last batch per second, including any pauses in it
+	 * 
+	 */
+	public double getLastEventsPerSecond() {
+		if (lastBatchMillis == 0) {
+			return lastBatchEvents;
+		}
+		return lastBatchEvents * 1000.0 / lastBatchMillis;
+	}
+
+	/**
+	 * 
+	 * A getter method for the tunnel the session runs over
+	 * 
+	 * @return The tunnel, which also reports bytes and latency
+	 * 
+	 */
+	public PortTunnel getTunnel() {
+		return tunnel;
+	}
+
+	/**
+	 * 
+	 * Ends the monkey session on the device
+	 * 
+	 */
+	@Override
+	public void close() throws IOException {
+		if (out != null) {
+			try {
+				write("quit");
+			} catch (IOException e) {
+				// The session is already gone
+			}
+		}
+		disconnect();
+		if (tunnel != null) {
+			tunnel.close();
+		}
+		if (monkey != null) {
+			monkey.destroy();
+		}
+	}
+
+	private void connect() throws IOException {
+		socket = new Socket("127.0.0.1", tunnel.getLocalPort());
+		socket.setTcpNoDelay(true);
+		out = socket.getOutputStream();
+		in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+	}
+
+	private void disconnect() {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		socket = null;
+		out = null;
+		in = null;
+	}
+
+	private void write(String command) throws IOException {
+		out.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+}
@@ -0,0 +1,43 @@
+package adbTools;
+
+/**
+ * 
+ * A listener that receives instrumentation test events as they are parsed.
+ * Methods may be called from several device threads at once
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public interface InstrumentationListener {
+
+	/**
+	 * 
+	 * Called when a test starts on a device
+	 * 
+	 * @param result The result of the test, which is not finished yet
+	 * 
+	 */
+	void testStarted(TestResult result);
+
+	/**
+	 * 
+	 * Called when a test finishes on a device
+	 * 
+	 * @param result The finished result of the test
+	 * 
+	 */
+	void testEnded(TestResult result);
+
+	/**
+	 * 
+	 * Called when an instrumentation run ends without reporting a final result,
+	 * for example when the test process crashes or the device goes away
+	 * 
+	 * @param device     The device the run failed on
+	 * @param shardIndex The shard that was running, or -1 when not sharded
+	 * @param message    The reason given for the failure
+	 * 
+	 */
+	void runFailed(Device device, int shardIndex, String message);
+}
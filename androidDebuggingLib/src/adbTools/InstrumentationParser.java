@@ -0,0 +1,191 @@
+package adbTools;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 
+ * An incremental parser for the raw output of "am instrument -r". Lines are fed
+ * in one at a time as they are read from the device, and test events are passed
+ * to a listener as soon as they are complete
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class InstrumentationParser {
+	private static final String STATUS = "INSTRUMENTATION_STATUS: ";
+	private static final String STATUS_CODE = "INSTRUMENTATION_STATUS_CODE: ";
+	private static final String RESULT = "INSTRUMENTATION_RESULT: ";
+	private static final String CODE = "INSTRUMENTATION_CODE: ";
+	private static final String FAILED = "INSTRUMENTATION_FAILED: ";
+	private static final String ABORTED = "INSTRUMENTATION_ABORTED: ";
+
+	private Device device;
+	private int shardIndex;
+	private int attempt;
+	private InstrumentationListener listener;
+
+	private Map<String, StringBuilder> bundle = new LinkedHashMap<String, StringBuilder>();
+	private StringBuilder currentValue;
+	private TestResult current;
+	private List<TestResult> results = new ArrayList<TestResult>();
+	private boolean runComplete = false;
+	private String runFailure;
+
+	/**
+	 * 
+	 * Class constructor for a parser of a single instrumentation run
+	 * 
+	 * @param setDevice     The device the run is on
+	 * @param setShardIndex The shard that is running, or -1 when not sharded
+	 * @param setAttempt    The attempt number of the run, starting at 0
+	 * @param setListener   The listener to pass test events to
+	 * 
+	 */
+	public InstrumentationParser(Device setDevice, int setShardIndex, int setAttempt,
+			InstrumentationListener setListener) {
+		device = setDevice;
+		shardIndex = setShardIndex;
+		attempt = setAttempt;
+		listener = setListener;
+	}
+
+	/**
+	 * 
+	 * Parses the next line of output from the run
+	 * 
+	 * @param line A line of output, without the line terminator
+	 * 
+	 */
+	public void parseLine(String line) {
+		if (line.startsWith(STATUS_CODE)) {
+			handleStatus(parseCode(line.substring(STATUS_CODE.length())));
+			bundle.clear();
+			currentValue = null;
+		} else if (line.startsWith(STATUS)) {
+			addValue(line.substring(STATUS.length()));
+		} else if (line.startsWith(RESULT)) {
+			addValue(line.substring(RESULT.length()));
+		} else if (line.startsWith(CODE)) {
+			runComplete = true;
+			StringBuilder shortMsg = bundle.get("shortMsg");
+			if (shortMsg != null) {
+				runFailure = shortMsg.toString();
+			}
+			bundle.clear();
+			currentValue = null;
+		} else if (line.startsWith(FAILED)) {
+			runFailure = line.substring(FAILED.length());
+		} else if (line.startsWith(ABORTED)) {
+			runFailure = line.substring(ABORTED.length());
+		} else if (currentValue != null) {
+			currentValue.append('\n').append(line);
+		}
+	}
+
+	/**
+	 * 
+	 * Ends the run once its output has been fully read. If the run did not report a
+	 * final result, any test that was still running is marked as an error
+	 * 
+	 */
+	public void finish() {
+		if (!runComplete && runFailure == null) {
+			runFailure = "Instrumentation run ended without a result";
+		}
+		if (runFailure != null) {
+			if (current != null) {
+				current.finish(TestResult.STATUS_ERROR, "Test run failed: " + runFailure);
+				results.add(current);
+				listener.testEnded(current);
+				current = null;
+			}
+			listener.runFailed(device, shardIndex, runFailure);
+		}
+	}
+
+	/**
+	 * 
+	 * A getter method for the tests that have finished in this run
+	 * 
+	 * @return A list of finished test results in the order they ended
+	 * 
+	 */
+	public List<TestResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * 
+	 * A method to check if the run finished normally
+	 * 
+	 * @return Whether or not the run reported a final result without a failure
+	 * 
+	 */
+	public boolean isRunComplete() {
+		return runComplete && runFailure == null;
+	}
+
+	/**
+	 * 
+	 * A getter method for the reason a run failed
+	 * 
+	 * @return The failure message, or null if the run did not fail
+	 * 
+	 */
+	public String getRunFailure() {
+		return runFailure;
+	}
+
+	private void addValue(String keyValue) {
+		int split = keyValue.indexOf('=');
+		if (split < 0) {
+			currentValue = null;
+			return;
+		}
+		currentValue = new StringBuilder(keyValue.substring(split + 1));
+		bundle.put(keyValue.substring(0, split), currentValue);
+	}
+
+	private void handleStatus(int code) {
+		String className = valueOf("class");
+		String testName = valueOf("test");
+		if (className == null || testName == null) {
+			return;
+		}
+
+		if (code == TestResult.STATUS_START) {
+			current = new TestResult(device, shardIndex, attempt, className, testName);
+			listener.testStarted(current);
+		} else if (code <= TestResult.STATUS_OK && code >= TestResult.STATUS_ASSUMPTION_FAILURE) {
+			// Only final codes end a test; interim reports (STATUS_IN_PROGRESS) and unknown codes do not
+			TestResult result = current;
+			if (result == null || !result.getClassName().equals(className) || !result.getTestName().equals(testName)) {
+				result = new TestResult(device, shardIndex, attempt, className, testName);
+			}
+			result.finish(code, valueOf("stack"));
+			results.add(result);
+			listener.testEnded(result);
+			current = null;
+		}
+	}
+
+	private String valueOf(String key) {
+		StringBuilder value = bundle.get(key);
+		if (value == null) {
+			return null;
+		}
+		return value.toString();
+	}
+
+	private int parseCode(String code) {
+		try {
+			return Integer.parseInt(code.trim());
+		} catch (NumberFormatException e) {
+			return TestResult.STATUS_ERROR;
+		}
+	}
+}
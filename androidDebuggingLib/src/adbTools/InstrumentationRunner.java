@@ -0,0 +1,282 @@
+package adbTools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * Runs an instrumentation test suite across several devices at once. The suite
+ * is split into shards with "-e numShards" and "-e shardIndex", and every device
+ * takes the next waiting shard as soon as it is idle. Failed tests and crashed
+ * shards are queued again so that they are retried on whichever device frees up
+ * first. Test events are passed to listeners while the suite is running
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class InstrumentationRunner implements InstrumentationListener {
+	private static final long POLL_MILLIS = 100;
+
+	private List<Device> devices;
+	private String component;
+	private Map<String, String> instrumentationArgs = new LinkedHashMap<String, String>();
+	private List<InstrumentationListener> listeners = new CopyOnWriteArrayList<InstrumentationListener>();
+	private int shardsPerDevice = 1;
+	private int maxRetries = 1;
+
+	private LinkedBlockingQueue<Run> queue = new LinkedBlockingQueue<Run>();
+	private AtomicInteger outstanding = new AtomicInteger();
+	private Map<String, TestResult> results = new LinkedHashMap<String, TestResult>();
+
+	/**
+	 * 
+	 * Class constructor for a runner
+	 * 
+	 * @param setDevices   The devices to spread the suite across
+	 * @param setComponent The instrumentation to run (such as
+	 *                     'com.example.test/androidx.test.runner.AndroidJUnitRunner')
+	 * 
+	 */
+	public InstrumentationRunner(List<Device> setDevices, String setComponent) {
+		if (setDevices.size() == 0) {
+			throw new RuntimeException("There are no devices to run on");
+		}
+		devices = setDevices;
+		component = setComponent;
+	}
+
+	/**
+	 * 
+	 * Adds an argument that is passed to every run with "-e key value"
+	 * 
+	 * @param key   The argument name (such as 'package' or 'annotation')
+	 * @param value The argument value
+	 * 
+	 */
+	public void addInstrumentationArg(String key, String value) {
+		instrumentationArgs.put(key, value);
+	}
+
+	/**
+	 * 
+	 * Adds a listener that receives test events while the suite runs
+	 * 
+	 * @param listener The listener to add
+	 * 
+	 */
+	public void addListener(InstrumentationListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * 
+	 * Sets how many shards to create for every device. More shards balance better
+	 * when test durations are uneven, at the cost of starting more runs
+	 * 
+	 * @param toSet The number of shards per device, at least 1
+	 * 
+	 */
+	public void setShardsPerDevice(int toSet) {
+		shardsPerDevice = Math.max(1, toSet);
+	}
+
+	/**
+	 * 
+	 * Sets how many times a failed test or crashed shard is retried
+	 * 
+	 * @param toSet The number of retries, 0 to disable retrying
+	 * 
+	 */
+	public void setMaxRetries(int toSet) {
+		maxRetries = Math.max(0, toSet);
+	}
+
+	/**
+	 * 
+	 * Runs the suite and waits for every shard and retry to finish
+	 * 
+	 * @return The final result of every test, using the last attempt of retried tests
+	 * @throws InterruptedException When the calling thread is interrupted while waiting
+	 * 
+	 */
+	public List<TestResult> run() throws InterruptedException {
+		int numShards = devices.size() * shardsPerDevice;
+		synchronized (results) {
+			results.clear();
+		}
+		for (int i = 0; i < numShards; i++) {
+			submit(new Run(numShards, i, null, new LinkedHashSet<String>(), 0));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(devices.size());
+		for (int i = 0; i < devices.size(); i++) {
+			Device device = devices.get(i);
+			pool.execute(() -> work(device));
+		}
+		pool.shutdown();
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			pool.shutdownNow();
+			throw e;
+		}
+
+		synchronized (results) {
+			return new ArrayList<TestResult>(results.values());
+		}
+	}
+
+	private void submit(Run run) {
+		outstanding.incrementAndGet();
+		queue.add(run);
+	}
+
+	private void work(Device device) {
+		try {
+			while (true) {
+				Run run = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (run == null) {
+					if (outstanding.get() == 0) {
+						return;
+					}
+					continue;
+				}
+				try {
+					execute(device, run);
+				} finally {
+					outstanding.decrementAndGet();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void execute(Device device, Run run) {
+		InstrumentationParser parser = new InstrumentationParser(device, run.shardIndex, run.attempt, this);
+		try {
+			Process process = device.startShell(run.toShellCommand());
+			BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			String line = out.readLine();
+			while (line != null) {
+				parser.parseLine(line);
+				line = out.readLine();
+			}
+			out.close();
+			process.waitFor();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		parser.finish();
+
+		if (run.attempt >= maxRetries) {
+			return;
+		}
+
+		Set<String> failed = new LinkedHashSet<String>();
+		Set<String> finished = new LinkedHashSet<String>(run.excluded);
+		List<TestResult> ended = parser.getResults();
+		for (int i = 0; i < ended.size(); i++) {
+			finished.add(ended.get(i).getTestId());
+			if (ended.get(i).isFailed()) {
+				failed.add(ended.get(i).getTestId());
+			}
+		}
+
+		if (failed.size() > 0) {
+			submit(new Run(run.numShards, -1, failed, new LinkedHashSet<String>(), run.attempt + 1));
+		}
+		if (!parser.isRunComplete()) {
+			if (run.included == null) {
+				submit(new Run(run.numShards, run.shardIndex, null, finished, run.attempt + 1));
+			} else {
+				Set<String> remaining = new LinkedHashSet<String>(run.included);
+				remaining.removeAll(finished);
+				if (remaining.size() > 0) {
+					submit(new Run(run.numShards, -1, remaining, new LinkedHashSet<String>(), run.attempt + 1));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void testStarted(TestResult result) {
+		for (InstrumentationListener listener : listeners) {
+			listener.testStarted(result);
+		}
+	}
+
+	@Override
+	public void testEnded(TestResult result) {
+		synchronized (results) {
+			results.put(result.getTestId(), result);
+		}
+		for (InstrumentationListener listener : listeners) {
+			listener.testEnded(result);
+		}
+	}
+
+	@Override
+	public void runFailed(Device device, int shardIndex, String message) {
+		for (InstrumentationListener listener : listeners) {
+			listener.runFailed(device, shardIndex, message);
+		}
+	}
+
+	/**
+	 * 
+	 * A single "am instrument" invocation, either a shard of the suite or a retry of
+	 * a set of tests
+	 * 
+	 */
+	private class Run {
+		private int numShards;
+		private int shardIndex;
+		private Set<String> included;
+		private Set<String> excluded;
+		private int attempt;
+
+		private Run(int setNumShards, int setShardIndex, Set<String> setIncluded, Set<String> setExcluded,
+				int setAttempt) {
+			numShards = setNumShards;
+			shardIndex = setShardIndex;
+			included = setIncluded;
+			excluded = setExcluded;
+			attempt = setAttempt;
+		}
+
+		private String toShellCommand() {
+			StringBuilder command = new StringBuilder("am instrument -r -w");
+			for (Map.Entry<String, String> arg : instrumentationArgs.entrySet()) {
+				command.append(" -e ").append(arg.getKey()).append(' ').append(Device.quote(arg.getValue()));
+			}
+			if (included == null) {
+				command.append(" -e numShards ").append(numShards);
+				command.append(" -e shardIndex ").append(shardIndex);
+			} else {
+				// Nested classes are named Outer$Inner, which the device shell would expand
+				command.append(" -e class ").append(Device.quote(String.join(",", included)));
+			}
+			if (excluded.size() > 0) {
+				command.append(" -e notClass ").append(Device.quote(String.join(",", excluded)));
+			}
+			return command.append(' ').append(component).toString();
+		}
+	}
+}
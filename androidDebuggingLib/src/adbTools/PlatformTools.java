@@ -77,6 +77,51 @@ public class PlatformTools {
 		return devices;
 	}
 	
+	/**
+	 * 
+	 * Connects to a device over the network with "adb connect"
+	 * 
+	 * @param target The address of the device, as host:port (the port defaults to 5555)
+	 * @return True if the device is connected, false if the connection failed
+	 * 
+	 */
+	public boolean connect(String target) {
+		Command adbConnect = new Command(adbPath, "connect", target);
+		adbConnect.exec();
+
+		for (int i = 0; i < adbConnect.getOutput().size(); i++) {
+			String line = adbConnect.getOutput(i);
+			if (line.startsWith("connected to") || line.startsWith("already connected to")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 
+	 * Disconnects from a device connected over the network
+	 * 
+	 * @param target The address the device was connected with, as host:port
+	 * 
+	 */
+	public void disconnect(String target) {
+		Command adbDisconnect = new Command(adbPath, "disconnect", target);
+		adbDisconnect.exec();
+	}
+
+	/**
+	 * 
+	 * Creates a manager that connects to many network devices at once and keeps
+	 * them connected
+	 * 
+	 * @return A connection manager whose devices are listed by getDevices()
+	 * 
+	 */
+	public ConnectionManager connectionManager() {
+		return new ConnectionManager(this);
+	}
+
 	/**
 	 * 
 	 * A getter method for the adbPath field
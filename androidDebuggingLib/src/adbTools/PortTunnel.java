@@ -0,0 +1,450 @@
+package adbTools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 
+ * An in-process alternative to "adb forward". Connections made to a local port
+ * are carried to a socket on the device over streams opened directly on the ADB
+ * server. Every connection of the tunnel is handled by a single selector thread
+ * using pooled direct buffers, and the tunnel keeps byte counts and latency
+ * samples
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class PortTunnel implements Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int LATENCY_SAMPLES = 1024;
+	private static final long OPEN_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+	private Device device;
+	private String remote;
+	private BufferPool buffers = new BufferPool(BUFFER_SIZE);
+	private Selector selector;
+	private ServerSocketChannel server;
+	private Thread thread;
+	private List<Handshake> handshakes = new ArrayList<Handshake>();
+	private List<Pipe> pipes = new ArrayList<Pipe>();
+
+	private AtomicLong bytesSent = new AtomicLong();
+	private AtomicLong bytesReceived = new AtomicLong();
+	private AtomicLong connections = new AtomicLong();
+	private RingBuffer connectLatency = new RingBuffer(LATENCY_SAMPLES);
+	private RingBuffer latency = new RingBuffer(LATENCY_SAMPLES);
+
+	/**
+	 * 
+	 * Class constructor for a tunnel. The tunnel does not accept connections until
+	 * it is started
+	 * 
+	 * @param setDevice The device to tunnel to
+	 * @param setRemote The socket on the device (such as 'tcp:8080' or 'localabstract:name')
+	 * 
+	 */
+	public PortTunnel(Device setDevice, String setRemote) {
+		device = setDevice;
+		remote = setRemote;
+	}
+
+	/**
+	 * 
+	 * Starts accepting connections on a local port
+	 * 
+	 * @param localPort The local port to listen on, or 0 to pick a free port
+	 * @throws IOException When the local port could not be opened
+	 * 
+	 */
+	public void start(int localPort) throws IOException {
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("127.0.0.1", localPort));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+
+		thread = new Thread(this::loop, "tunnel-" + device.getSerial() + "-" + remote);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * 
+	 * A getter method for the local port of the tunnel
+	 * 
+	 * @return The port the tunnel accepts connections on
+	 * 
+	 */
+	public int getLocalPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * 
+	 * A getter method for the bytes sent to the device
+	 * 
+	 * @return The number of bytes written to the device across all connections
+	 * 
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	/**
+	 * 
+	 * A getter method for the bytes received from the device
+	 * 
+	 * @return The number of bytes read from the device across all connections
+	 * 
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of connections accepted
+	 * 
+	 * @return The number of client connections accepted since the tunnel started
+	 * 
+	 */
+	public long getConnectionCount() {
+		return connections.get();
+	}
+
+	/**
+	 * 
+	 * A getter method for the time taken to open the device side of a connection
+	 * 
+	 * @return Samples in milliseconds, one per accepted connection
+	 * 
+	 */
+	public RingBuffer getConnectLatency() {
+		return connectLatency;
+	}
+
+	/**
+	 * 
+	 * A getter method for the response latency of the tunnel, measured from the
+	 * first byte sent to the device to the first byte that comes back
+	 * 
+	 * @return Samples in milliseconds, one per request and response exchange
+	 * 
+	 */
+	public RingBuffer getLatency() {
+		return latency;
+	}
+
+	/**
+	 * 
+	 * Stops accepting connections and closes every open connection
+	 * 
+	 */
+	@Override
+	public void close() throws IOException {
+		if (selector != null) {
+			selector.close();
+		}
+		if (server != null) {
+			server.close();
+		}
+		if (thread != null) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void loop() {
+		try {
+			while (selector.isOpen()) {
+				selector.select(handshakes.isEmpty() ? 0 : 1000);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else if (key.attachment() instanceof Handshake) {
+						Handshake handshake = (Handshake) key.attachment();
+						try {
+							handshake.handle();
+						} catch (IOException e) {
+							handshake.close();
+						}
+					} else {
+						Pipe pipe = (Pipe) key.attachment();
+						try {
+							pipe.handle(key);
+						} catch (IOException e) {
+							pipe.close();
+						}
+					}
+				}
+				expireHandshakes();
+			}
+		} catch (ClosedSelectorException e) {
+			// The tunnel was closed while waiting
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			List<Handshake> opening = new ArrayList<Handshake>(handshakes);
+			for (int i = 0; i < opening.size(); i++) {
+				opening.get(i).close();
+			}
+			List<Pipe> open = new ArrayList<Pipe>(pipes);
+			for (int i = 0; i < open.size(); i++) {
+				open.get(i).close();
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel client = server.accept();
+		if (client == null) {
+			return;
+		}
+
+		// The server only answers once the device has opened the socket, so the device
+		// side is opened without blocking and the client waits until it is ready
+		SocketChannel target = SocketChannel.open();
+		try {
+			target.configureBlocking(false);
+			boolean connected = target.connect(new InetSocketAddress(AdbConnection.HOST, AdbConnection.port));
+			handshakes.add(new Handshake(client, target, connected));
+		} catch (IOException e) {
+			client.close();
+			target.close();
+		}
+	}
+
+	private void expireHandshakes() {
+		long now = System.nanoTime();
+		List<Handshake> opening = new ArrayList<Handshake>(handshakes);
+		for (int i = 0; i < opening.size(); i++) {
+			if (now - opening.get(i).started > OPEN_TIMEOUT) {
+				opening.get(i).close();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * A client connection whose device stream is still being opened. The ADB
+	 * server is asked for the transport of the device, then for the remote
+	 * socket, and each request has to be answered with OKAY
+	 * 
+	 */
+	private class Handshake {
+		private SocketChannel client;
+		private SocketChannel target;
+		private SelectionKey key;
+		private ByteBuffer request;
+		private ByteBuffer reply = ByteBuffer.allocate(4);
+		private boolean transportSelected = false;
+		private long started = System.nanoTime();
+
+		private Handshake(SocketChannel setClient, SocketChannel setTarget, boolean connected) throws IOException {
+			client = setClient;
+			target = setTarget;
+			key = target.register(selector, SelectionKey.OP_CONNECT, this);
+			if (connected) {
+				send("host:transport:" + device.getSerial());
+			}
+		}
+
+		private void handle() throws IOException {
+			if (key.isConnectable()) {
+				if (target.finishConnect()) {
+					send("host:transport:" + device.getSerial());
+				}
+			} else if (key.isWritable()) {
+				write();
+			} else if (key.isReadable()) {
+				if (target.read(reply) < 0) {
+					throw new IOException("The connection to ADB was closed");
+				}
+				if (reply.hasRemaining()) {
+					return;
+				}
+				if (!new String(reply.array(), StandardCharsets.US_ASCII).equals("OKAY")) {
+					throw new IOException("ADB refused to open " + remote);
+				}
+				reply.clear();
+				if (!transportSelected) {
+					transportSelected = true;
+					send(remote);
+				} else {
+					open();
+				}
+			}
+		}
+
+		private void send(String toSend) throws IOException {
+			request = AdbConnection.encode(toSend);
+			write();
+		}
+
+		private void write() throws IOException {
+			target.write(request);
+			key.interestOps(request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+
+		private void open() throws IOException {
+			handshakes.remove(this);
+			connectLatency.add(System.currentTimeMillis(), (System.nanoTime() - started) / 1e6);
+			connections.incrementAndGet();
+
+			client.configureBlocking(false);
+			client.socket().setTcpNoDelay(true);
+			target.socket().setTcpNoDelay(true);
+			pipes.add(new Pipe(client, target, key));
+		}
+
+		private void close() {
+			handshakes.remove(this);
+			try {
+				client.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			try {
+				target.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * One client connection and the device stream it is joined to. Both buffers
+	 * are kept in fill mode, holding the bytes that still have to be written
+	 * 
+	 */
+	private class Pipe {
+		private SocketChannel client;
+		private SocketChannel target;
+		private SelectionKey clientKey;
+		private SelectionKey targetKey;
+		private ByteBuffer up = buffers.take();
+		private ByteBuffer down = buffers.take();
+		private boolean clientEnded = false;
+		private boolean targetEnded = false;
+		private long waitingSince = 0;
+		private boolean closed = false;
+
+		private Pipe(SocketChannel setClient, SocketChannel setTarget, SelectionKey setTargetKey) throws IOException {
+			client = setClient;
+			target = setTarget;
+			clientKey = client.register(selector, SelectionKey.OP_READ, this);
+			targetKey = setTargetKey;
+			targetKey.attach(this);
+			targetKey.interestOps(SelectionKey.OP_READ);
+		}
+
+		private void handle(SelectionKey key) throws IOException {
+			if (key.isReadable()) {
+				if (key == clientKey) {
+					int n = client.read(up);
+					if (n < 0) {
+						clientEnded = true;
+					} else if (n > 0 && waitingSince == 0) {
+						waitingSince = System.nanoTime();
+					}
+				} else {
+					int n = target.read(down);
+					if (n < 0) {
+						targetEnded = true;
+					} else if (n > 0) {
+						bytesReceived.addAndGet(n);
+						if (waitingSince != 0) {
+							latency.add(System.currentTimeMillis(), (System.nanoTime() - waitingSince) / 1e6);
+							waitingSince = 0;
+						}
+					}
+				}
+			}
+
+			bytesSent.addAndGet(flush(up, target));
+			flush(down, client);
+
+			if (clientEnded && up.position() == 0 && !target.socket().isOutputShutdown()) {
+				target.shutdownOutput();
+			}
+			if (targetEnded && down.position() == 0 && !client.socket().isOutputShutdown()) {
+				client.shutdownOutput();
+			}
+			if (clientEnded && targetEnded && up.position() == 0 && down.position() == 0) {
+				close();
+				return;
+			}
+
+			int clientOps = 0;
+			int targetOps = 0;
+			if (!clientEnded && up.hasRemaining()) {
+				clientOps |= SelectionKey.OP_READ;
+			}
+			if (!targetEnded && down.hasRemaining()) {
+				targetOps |= SelectionKey.OP_READ;
+			}
+			if (up.position() > 0) {
+				targetOps |= SelectionKey.OP_WRITE;
+			}
+			if (down.position() > 0) {
+				clientOps |= SelectionKey.OP_WRITE;
+			}
+			clientKey.interestOps(clientOps);
+			targetKey.interestOps(targetOps);
+		}
+
+		private int flush(ByteBuffer buffer, SocketChannel to) throws IOException {
+			if (buffer.position() == 0) {
+				return 0;
+			}
+			buffer.flip();
+			int written = to.write(buffer);
+			buffer.compact();
+			return written;
+		}
+
+		private void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			pipes.remove(this);
+			try {
+				client.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			try {
+				target.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			buffers.give(up);
+			buffers.give(down);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package adbTools;
+
+import java.io.IOException;
+
+/**
+ * 
+ * The default transport, which starts every command as a real process
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class ProcessTransport implements Transport {
+
+	@Override
+	public Process start(Command command) throws IOException {
+		return Runtime.getRuntime().exec(command.toString());
+	}
+}
@@ -0,0 +1,190 @@
+package adbTools;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * One recorded command: the output it printed on each stream, when each part
+ * of the output arrived and how the command exited. Device serials are stored
+ * as a placeholder so a recording of one device can be replayed as any device
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+class Recording {
+	static final int MAGIC = 0x41444252;
+	static final int VERSION = 1;
+	static final String SERIAL = "${serial}";
+	static final byte STDOUT = 1;
+	static final byte STDERR = 2;
+
+	private String key;
+	private String serial;
+	private int exitCode;
+	private int duration;
+	private List<Chunk> chunks = new ArrayList<Chunk>();
+
+	Recording(String setKey, String setSerial) {
+		key = setKey;
+		serial = setSerial;
+	}
+
+	/**
+	 * 
+	 * Builds the key a command is recorded under: its arguments without the adb
+	 * path, with the serial of the target device replaced by a placeholder. The
+	 * compression options of push and pull are left out, as they depend on the
+	 * ADB server the command ran against rather than on what was transferred
+	 * 
+	 * @param command The command
+	 * @return The key of the command
+	 * 
+	 */
+	static String key(Command command) {
+		String serial = serial(command);
+		List<String> args = command.getArgs();
+		StringBuilder key = new StringBuilder();
+		boolean transfer = false;
+		for (int i = 0; i < args.size(); i++) {
+			String arg = args.get(i);
+			if (transfer && arg.equals("-z")) {
+				i++;
+				continue;
+			} else if (transfer && arg.equals("-Z")) {
+				continue;
+			}
+			transfer = transfer || arg.equals("push") || arg.equals("pull");
+			if (key.length() > 0) {
+				key.append(' ');
+			}
+			key.append(arg.equals(serial) ? SERIAL : arg);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * 
+	 * Finds the device a command targets
+	 * 
+	 * @param command The command
+	 * @return The serial following "-s", or null if the command targets no device
+	 * 
+	 */
+	static String serial(Command command) {
+		List<String> args = command.getArgs();
+		for (int i = 0; i < args.size() - 1; i++) {
+			if (args.get(i).equals("-s")) {
+				return args.get(i + 1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 
+	 * Adds output, merging it with the previous output of the same stream if both
+	 * arrived in the same millisecond
+	 * 
+	 * @param stream The stream the output was printed on (STDOUT or STDERR)
+	 * @param offset The milliseconds since the command started
+	 * @param data   The output
+	 * @param length The number of bytes of data to add
+	 * 
+	 */
+	synchronized void add(byte stream, int offset, byte[] data, int length) {
+		if (!chunks.isEmpty()) {
+			Chunk last = chunks.get(chunks.size() - 1);
+			if (last.stream == stream && last.offset == offset) {
+				byte[] merged = new byte[last.data.length + length];
+				System.arraycopy(last.data, 0, merged, 0, last.data.length);
+				System.arraycopy(data, 0, merged, last.data.length, length);
+				last.data = merged;
+				return;
+			}
+		}
+		byte[] copy = new byte[length];
+		System.arraycopy(data, 0, copy, 0, length);
+		chunks.add(new Chunk(stream, offset, copy));
+	}
+
+	synchronized void finish(int setExitCode, int setDuration) {
+		exitCode = setExitCode;
+		duration = setDuration;
+		if (serial != null) {
+			for (int i = 0; i < chunks.size(); i++) {
+				chunks.get(i).data = replace(chunks.get(i).data, serial, SERIAL);
+			}
+		}
+	}
+
+	synchronized void write(DataOutputStream out) throws IOException {
+		out.writeUTF(key);
+		out.writeInt(exitCode);
+		out.writeInt(duration);
+		out.writeInt(chunks.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			Chunk chunk = chunks.get(i);
+			out.writeByte(chunk.stream);
+			out.writeInt(chunk.offset);
+			out.writeInt(chunk.data.length);
+			out.write(chunk.data);
+		}
+	}
+
+	static Recording read(DataInputStream in) throws IOException {
+		Recording recording = new Recording(in.readUTF(), null);
+		recording.exitCode = in.readInt();
+		recording.duration = in.readInt();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			byte stream = in.readByte();
+			int offset = in.readInt();
+			byte[] data = new byte[in.readInt()];
+			in.readFully(data);
+			recording.chunks.add(new Chunk(stream, offset, data));
+		}
+		return recording;
+	}
+
+	static byte[] replace(byte[] data, String target, String replacement) {
+		String text = new String(data, StandardCharsets.ISO_8859_1);
+		if (!text.contains(target)) {
+			return data;
+		}
+		return text.replace(target, replacement).getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	int getExitCode() {
+		return exitCode;
+	}
+
+	int getDuration() {
+		return duration;
+	}
+
+	List<Chunk> getChunks() {
+		return chunks;
+	}
+
+	static class Chunk {
+		final byte stream;
+		final int offset;
+		byte[] data;
+
+		Chunk(byte setStream, int setOffset, byte[] setData) {
+			stream = setStream;
+			offset = setOffset;
+			data = setData;
+		}
+	}
+}
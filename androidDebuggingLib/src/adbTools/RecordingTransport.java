@@ -0,0 +1,243 @@
+package adbTools;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 
+ * A transport that runs commands with another transport and records them to a
+ * compressed file that a ReplayTransport can serve later. The output of each
+ * command is recorded with the time each part arrived, and the serial of the
+ * device is replaced by a placeholder so recordings work for any device.
+ * Connections made directly to the ADB server (tunnels, bulk pulls, input
+ * injection and the connection manager) do not go through a transport and
+ * are not recorded
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class RecordingTransport implements Transport, Closeable {
+	private Transport delegate;
+	private DataOutputStream out;
+	private int recordCount;
+
+	/**
+	 * 
+	 * Class constructor for a transport that records real processes
+	 * 
+	 * @param file The file to record to, replaced if it exists
+	 * @throws IOException When the file could not be created
+	 * 
+	 */
+	public RecordingTransport(File file) throws IOException {
+		this(new ProcessTransport(), file);
+	}
+
+	/**
+	 * 
+	 * Class constructor for a transport that records another transport
+	 * 
+	 * @param setDelegate The transport that runs the commands
+	 * @param file        The file to record to, replaced if it exists
+	 * @throws IOException When the file could not be created
+	 * 
+	 */
+	public RecordingTransport(Transport setDelegate, File file) throws IOException {
+		delegate = setDelegate;
+		out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+		out.writeInt(Recording.MAGIC);
+		out.writeInt(Recording.VERSION);
+	}
+
+	@Override
+	public Process start(Command command) throws IOException {
+		Process process = delegate.start(command);
+		return new RecordingProcess(process, new Recording(Recording.key(command), Recording.serial(command)));
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of commands recorded so far
+	 * 
+	 * @return The number of finished commands written to the file
+	 * 
+	 */
+	public synchronized int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * 
+	 * Finishes the file. Commands that are still running are not recorded
+	 * 
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	private synchronized void write(Recording recording) {
+		if (out == null) {
+			return;
+		}
+		try {
+			recording.write(out);
+			recordCount++;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private class RecordingProcess extends Process {
+		private Process process;
+		private Recording recording;
+		private long started = System.nanoTime();
+		private InputStream stdout;
+		private InputStream stderr;
+		private int open = 2;
+		private boolean finished;
+
+		private RecordingProcess(Process setProcess, Recording setRecording) {
+			process = setProcess;
+			recording = setRecording;
+			stdout = new RecordingStream(process.getInputStream(), Recording.STDOUT);
+			stderr = new RecordingStream(process.getErrorStream(), Recording.STDERR);
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return process.getOutputStream();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return stdout;
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return stderr;
+		}
+
+		@Override
+		public int waitFor() throws InterruptedException {
+			int exitCode = process.waitFor();
+			finish();
+			return exitCode;
+		}
+
+		@Override
+		public int exitValue() {
+			return process.exitValue();
+		}
+
+		@Override
+		public void destroy() {
+			process.destroy();
+			finish();
+		}
+
+		@Override
+		public boolean isAlive() {
+			return process.isAlive();
+		}
+
+		private int elapsed() {
+			return (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		}
+
+		private synchronized void closed() {
+			open--;
+			if (open == 0) {
+				finish();
+			}
+		}
+
+		private void finish() {
+			int duration = elapsed();
+			synchronized (this) {
+				if (finished) {
+					return;
+				}
+				finished = true;
+			}
+			int exitCode = -1;
+			try {
+				if (process.waitFor(1, TimeUnit.SECONDS)) {
+					exitCode = process.exitValue();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			recording.finish(exitCode, duration);
+			write(recording);
+		}
+
+		private class RecordingStream extends InputStream {
+			private InputStream in;
+			private byte stream;
+			private boolean ended;
+
+			private RecordingStream(InputStream setIn, byte setStream) {
+				in = setIn;
+				stream = setStream;
+			}
+
+			@Override
+			public int read() throws IOException {
+				byte[] one = new byte[1];
+				int n = read(one, 0, 1);
+				return n < 0 ? -1 : one[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = in.read(b, off, len);
+				if (n > 0) {
+					byte[] data = b;
+					if (off != 0) {
+						data = new byte[n];
+						System.arraycopy(b, off, data, 0, n);
+					}
+					recording.add(stream, elapsed(), data, n);
+				} else if (n < 0) {
+					end();
+				}
+				return n;
+			}
+
+			@Override
+			public int available() throws IOException {
+				return in.available();
+			}
+
+			@Override
+			public void close() throws IOException {
+				in.close();
+				end();
+			}
+
+			private void end() {
+				synchronized (this) {
+					if (ended) {
+						return;
+					}
+					ended = true;
+				}
+				closed();
+			}
+		}
+	}
+}
@@ -0,0 +1,354 @@
+package adbTools;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 
+ * A transport that answers commands with the output recorded by a
+ * RecordingTransport, without starting any process. "adb devices -l" lists any
+ * number of simulated devices, and every command for a simulated device is
+ * answered with a recording of the same command on a real device. Output keeps
+ * its recorded timing, optionally sped up, so the library and the code using it
+ * can be profiled against a whole fleet on one machine. Commands that were
+ * recorded several times are answered with each recording in turn
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class ReplayTransport implements Transport {
+	private static final String DEVICES = "devices -l";
+	private static final String DEFAULT_DEVICE = Recording.SERIAL
+			+ "          device product:sim model:Simulated device:sim transport_id:${id}";
+
+	private Map<String, List<Recording>> recordings = new HashMap<String, List<Recording>>();
+	private Map<String, AtomicInteger> cursors = new HashMap<String, AtomicInteger>();
+	private String deviceTemplate = DEFAULT_DEVICE;
+	private List<String> serials = new ArrayList<String>();
+	private double speed = 1;
+	private AtomicInteger replayed = new AtomicInteger();
+	private AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * 
+	 * Class constructor for a replay transport that simulates one device
+	 * 
+	 * @param file A file written by a RecordingTransport
+	 * @throws IOException When the file could not be read
+	 * 
+	 */
+	public ReplayTransport(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+			if (in.readInt() != Recording.MAGIC || in.readInt() != Recording.VERSION) {
+				throw new IOException(file + " is not a recording");
+			}
+			while (true) {
+				Recording recording;
+				try {
+					recording = Recording.read(in);
+				} catch (EOFException e) {
+					// The end of the file, or a command that was cut off when recording stopped
+					break;
+				}
+				List<Recording> list = recordings.get(recording.getKey());
+				if (list == null) {
+					list = new ArrayList<Recording>();
+					recordings.put(recording.getKey(), list);
+					cursors.put(recording.getKey(), new AtomicInteger());
+				}
+				list.add(recording);
+			}
+		}
+		findDeviceTemplate();
+		setDeviceCount(1);
+	}
+
+	/**
+	 * 
+	 * Sets how fast output is replayed
+	 * 
+	 * @param toSet 1 for the recorded timing, 10 for ten times faster, or 0 to
+	 *              replay without any delay
+	 * 
+	 */
+	public void setSpeed(double toSet) {
+		speed = toSet;
+	}
+
+	/**
+	 * 
+	 * Sets the number of simulated devices listed by "adb devices -l". Their
+	 * serials are sim-0001, sim-0002 and so on
+	 * 
+	 * @param toSet The number of devices to simulate
+	 * 
+	 */
+	public void setDeviceCount(int toSet) {
+		List<String> simulated = new ArrayList<String>();
+		for (int i = 1; i <= toSet; i++) {
+			simulated.add(String.format("sim-%04d", i));
+		}
+		serials = simulated;
+	}
+
+	/**
+	 * 
+	 * A getter method for the serials of the simulated devices
+	 * 
+	 * @return The serials listed by "adb devices -l"
+	 * 
+	 */
+	public List<String> getSerials() {
+		return serials;
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of different commands in the recording
+	 * 
+	 * @return The number of recorded commands, not counting repeats
+	 * 
+	 */
+	public int getCommandCount() {
+		return recordings.size();
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of commands answered from the recording
+	 * 
+	 * @return The number of commands replayed
+	 * 
+	 */
+	public int getReplayCount() {
+		return replayed.get();
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of commands that had no recording. These are
+	 * answered with an error and exit code 1
+	 * 
+	 * @return The number of commands without a recording
+	 * 
+	 */
+	public int getMissCount() {
+		return misses.get();
+	}
+
+	@Override
+	public Process start(Command command) throws IOException {
+		String key = Recording.key(command);
+		String serial = Recording.serial(command);
+
+		if (key.equals(DEVICES)) {
+			replayed.incrementAndGet();
+			List<Recording> devices = recordings.get(DEVICES);
+			int duration = devices == null ? 0 : devices.get(0).getDuration();
+			return new ReplayProcess(listDevices(), new byte[0], 0, duration, null);
+		}
+
+		List<Recording> list = recordings.get(key);
+		if (list == null) {
+			misses.incrementAndGet();
+			byte[] error = ("error: no recording of '" + key + "'\n").getBytes(StandardCharsets.UTF_8);
+			return new ReplayProcess(new byte[0], error, 1, 0, null);
+		}
+		replayed.incrementAndGet();
+		int next = cursors.get(key).getAndIncrement();
+		return new ReplayProcess(list.get(Math.floorMod(next, list.size())), serial);
+	}
+
+	private void findDeviceTemplate() {
+		List<Recording> devices = recordings.get(DEVICES);
+		if (devices == null) {
+			return;
+		}
+		StringBuilder text = new StringBuilder();
+		List<Recording.Chunk> chunks = devices.get(0).getChunks();
+		for (int i = 0; i < chunks.size(); i++) {
+			if (chunks.get(i).stream == Recording.STDOUT) {
+				text.append(new String(chunks.get(i).data, StandardCharsets.UTF_8));
+			}
+		}
+		String[] lines = text.toString().split("\n");
+		for (int i = 1; i < lines.length; i++) {
+			String line = lines[i].trim();
+			if (line.contains(" device ") && line.contains("transport_id:")) {
+				String serial = line.substring(0, line.indexOf(' '));
+				deviceTemplate = Recording.SERIAL + line.substring(serial.length())
+						.replaceAll("transport_id:\\d+", "transport_id:\\${id}");
+				return;
+			}
+		}
+	}
+
+	private byte[] listDevices() {
+		StringBuilder list = new StringBuilder("List of devices attached\n");
+		List<String> simulated = serials;
+		for (int i = 0; i < simulated.size(); i++) {
+			list.append(deviceTemplate.replace(Recording.SERIAL, simulated.get(i)).replace("${id}",
+					String.valueOf(i + 1)));
+			list.append('\n');
+		}
+		return list.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private class ReplayProcess extends Process {
+		private List<Recording.Chunk> chunks;
+		private String serial;
+		private int exitCode;
+		private int duration;
+		private long started = System.nanoTime();
+		private volatile boolean destroyed;
+		private InputStream stdout = new ReplayStream(Recording.STDOUT);
+		private InputStream stderr = new ReplayStream(Recording.STDERR);
+
+		private ReplayProcess(Recording recording, String setSerial) {
+			chunks = recording.getChunks();
+			exitCode = recording.getExitCode();
+			duration = recording.getDuration();
+			serial = setSerial;
+		}
+
+		private ReplayProcess(byte[] stdout, byte[] stderr, int setExitCode, int setDuration, String setSerial) {
+			chunks = new ArrayList<Recording.Chunk>();
+			chunks.add(new Recording.Chunk(Recording.STDOUT, 0, stdout));
+			chunks.add(new Recording.Chunk(Recording.STDERR, 0, stderr));
+			exitCode = setExitCode;
+			duration = setDuration;
+			serial = setSerial;
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return OutputStream.nullOutputStream();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return stdout;
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return stderr;
+		}
+
+		@Override
+		public int waitFor() throws InterruptedException {
+			if (!destroyed) {
+				sleepUntil(duration);
+			}
+			return exitValue();
+		}
+
+		@Override
+		public int exitValue() {
+			if (isAlive()) {
+				throw new IllegalThreadStateException("The replayed process has not exited");
+			}
+			return destroyed ? 143 : exitCode;
+		}
+
+		@Override
+		public void destroy() {
+			destroyed = true;
+		}
+
+		@Override
+		public boolean isAlive() {
+			return !destroyed && remaining(duration) > 0;
+		}
+
+		private long remaining(int offset) {
+			if (speed <= 0) {
+				return 0;
+			}
+			long due = started + (long) (TimeUnit.MILLISECONDS.toNanos(offset) / speed);
+			return due - System.nanoTime();
+		}
+
+		private void sleepUntil(int offset) throws InterruptedException {
+			long remaining = remaining(offset);
+			if (remaining > 0) {
+				TimeUnit.NANOSECONDS.sleep(remaining);
+			}
+		}
+
+		private class ReplayStream extends InputStream {
+			private byte stream;
+			private int chunk = -1;
+			private byte[] data = new byte[0];
+			private int position;
+
+			private ReplayStream(byte setStream) {
+				stream = setStream;
+			}
+
+			@Override
+			public int read() throws IOException {
+				byte[] one = new byte[1];
+				int n = read(one, 0, 1);
+				return n < 0 ? -1 : one[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0) {
+					return 0;
+				}
+				while (position == data.length) {
+					if (destroyed || !nextChunk()) {
+						return -1;
+					}
+				}
+				int n = Math.min(len, data.length - position);
+				System.arraycopy(data, position, b, off, n);
+				position += n;
+				return n;
+			}
+
+			@Override
+			public int available() {
+				return data.length - position;
+			}
+
+			private boolean nextChunk() throws IOException {
+				chunk++;
+				while (chunk < chunks.size() && chunks.get(chunk).stream != stream) {
+					chunk++;
+				}
+				if (chunk == chunks.size()) {
+					return false;
+				}
+				Recording.Chunk next = chunks.get(chunk);
+				try {
+					sleepUntil(next.offset);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while replaying", e);
+				}
+				data = serial == null ? next.data : Recording.replace(next.data, Recording.SERIAL, serial);
+				position = 0;
+				return true;
+			}
+		}
+	}
+}
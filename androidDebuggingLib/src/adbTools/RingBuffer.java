@@ -0,0 +1,219 @@
+package adbTools;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * A fixed size buffer of timestamped samples that keeps primitive values so that
+ * adding a sample never allocates. Once full, the oldest sample is overwritten.
+ * Aggregates are taken over the most recent samples
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class RingBuffer {
+	private double[] values;
+	private long[] times;
+	private double[] scratch;
+	private int next = 0;
+	private int count = 0;
+
+	/**
+	 * 
+	 * Class constructor for a ring buffer
+	 * 
+	 * @param capacity The number of samples kept before the oldest is overwritten
+	 * 
+	 */
+	public RingBuffer(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("A ring buffer needs room for at least one sample");
+		}
+		values = new double[capacity];
+		times = new long[capacity];
+		scratch = new double[capacity];
+	}
+
+	/**
+	 * 
+	 * Adds a sample, overwriting the oldest one if the buffer is full
+	 * 
+	 * @param time  The time of the sample in milliseconds since the epoch
+	 * @param value The sampled value
+	 * 
+	 */
+	public synchronized void add(long time, double value) {
+		values[next] = value;
+		times[next] = time;
+		next = (next + 1) % values.length;
+		if (count < values.length) {
+			count++;
+		}
+	}
+
+	/**
+	 * 
+	 * A getter method for the number of samples held
+	 * 
+	 * @return The number of samples, never more than the capacity
+	 * 
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * 
+	 * A getter method for the capacity of the buffer
+	 * 
+	 * @return The number of samples kept before the oldest is overwritten
+	 * 
+	 */
+	public int getCapacity() {
+		return values.length;
+	}
+
+	/**
+	 * 
+	 * A getter method for a sample value
+	 * 
+	 * @param i The age of the sample, 0 being the most recent
+	 * @return The sampled value
+	 * 
+	 */
+	public synchronized double get(int i) {
+		return values[indexOf(i)];
+	}
+
+	/**
+	 * 
+	 * A getter method for a sample time
+	 * 
+	 * @param i The age of the sample, 0 being the most recent
+	 * @return The time of the sample in milliseconds since the epoch
+	 * 
+	 */
+	public synchronized long getTime(int i) {
+		return times[indexOf(i)];
+	}
+
+	/**
+	 * 
+	 * A getter method for the most recent sample
+	 * 
+	 * @return The most recent value, or NaN if there are no samples
+	 * 
+	 */
+	public synchronized double getLatest() {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		return get(0);
+	}
+
+	/**
+	 * 
+	 * Finds the smallest of the most recent samples
+	 * 
+	 * @param window The number of recent samples to look at
+	 * @return The minimum, or NaN if there are no samples in the window
+	 * 
+	 */
+	public synchronized double min(int window) {
+		int n = Math.min(window, count);
+		if (n <= 0) {
+			return Double.NaN;
+		}
+		double min = Double.NaN;
+		for (int i = 0; i < n; i++) {
+			double value = values[indexOf(i)];
+			if (i == 0 || value < min) {
+				min = value;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * 
+	 * Finds the largest of the most recent samples
+	 * 
+	 * @param window The number of recent samples to look at
+	 * @return The maximum, or NaN if there are no samples in the window
+	 * 
+	 */
+	public synchronized double max(int window) {
+		int n = Math.min(window, count);
+		if (n <= 0) {
+			return Double.NaN;
+		}
+		double max = Double.NaN;
+		for (int i = 0; i < n; i++) {
+			double value = values[indexOf(i)];
+			if (i == 0 || value > max) {
+				max = value;
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * 
+	 * Averages the most recent samples
+	 * 
+	 * @param window The number of recent samples to look at
+	 * @return The mean, or NaN if there are no samples in the window
+	 * 
+	 */
+	public synchronized double mean(int window) {
+		int n = Math.min(window, count);
+		if (n <= 0) {
+			return Double.NaN;
+		}
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += values[indexOf(i)];
+		}
+		return sum / n;
+	}
+
+	/**
+	 * 
+	 * Finds a percentile of the most recent samples using the nearest rank
+	 * 
+	 * @param window     The number of recent samples to look at
+	 * @param percentile The percentile to find, from 0 to 100 (such as 95)
+	 * @return The value at that percentile, or NaN if there are no samples in the window
+	 * 
+	 */
+	public synchronized double percentile(int window, double percentile) {
+		int n = Math.min(window, count);
+		if (n <= 0) {
+			return Double.NaN;
+		}
+		for (int i = 0; i < n; i++) {
+			scratch[i] = values[indexOf(i)];
+		}
+		Arrays.sort(scratch, 0, n);
+		int rank = (int) Math.ceil(percentile / 100.0 * n);
+		return scratch[Math.min(n - 1, Math.max(0, rank - 1))];
+	}
+
+	/**
+	 * 
+	 * Removes every sample from the buffer
+	 * 
+	 */
+	public synchronized void clear() {
+		next = 0;
+		count = 0;
+	}
+
+	private int indexOf(int age) {
+		if (age < 0 || age >= count) {
+			throw new IndexOutOfBoundsException("No sample could be found at that age");
+		}
+		return (next - 1 - age + values.length) % values.length;
+	}
+}
@@ -0,0 +1,178 @@
+package adbTools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 
+ * Samples CPU, memory, battery and frame statistics from devices at a fixed
+ * interval. Each device runs a single shell loop that prints a sample every
+ * interval, so sampling does not start a new adb process per sample
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class TelemetrySampler {
+	private int intervalSeconds = 1;
+	private int capacity = 3600;
+	private String packageName;
+
+	private Map<String, DeviceTelemetry> telemetry = new ConcurrentHashMap<String, DeviceTelemetry>();
+	private Map<String, Process> processes = new ConcurrentHashMap<String, Process>();
+
+	/**
+	 * 
+	 * Sets the number of seconds between samples. Only affects devices started
+	 * after the call
+	 * 
+	 * @param toSet The sampling interval in seconds, at least 1
+	 * 
+	 */
+	public void setInterval(int toSet) {
+		intervalSeconds = Math.max(1, toSet);
+	}
+
+	/**
+	 * 
+	 * Sets the number of samples kept for every metric. Only affects devices
+	 * started after the call
+	 * 
+	 * @param toSet The number of samples to keep
+	 * 
+	 */
+	public void setCapacity(int toSet) {
+		capacity = toSet;
+	}
+
+	/**
+	 * 
+	 * Sets the package to collect frame statistics for with "dumpsys gfxinfo".
+	 * Frame statistics are not collected when no package is set
+	 * 
+	 * @param toSet The package (application) name, or null
+	 * 
+	 */
+	public void setPackage(String toSet) {
+		packageName = toSet;
+	}
+
+	/**
+	 * 
+	 * Starts sampling a device. Does nothing if the device is already being sampled
+	 * 
+	 * @param device The device to sample
+	 * @return The telemetry that the samples of the device are added to
+	 * @throws IOException When adb could not be started
+	 * 
+	 */
+	public synchronized DeviceTelemetry start(Device device) throws IOException {
+		DeviceTelemetry deviceTelemetry = telemetry.get(device.getSerial());
+		if (deviceTelemetry != null && processes.containsKey(device.getSerial())) {
+			return deviceTelemetry;
+		}
+
+		deviceTelemetry = new DeviceTelemetry(device, capacity);
+		Process process = device.startShell(buildLoop());
+		telemetry.put(device.getSerial(), deviceTelemetry);
+		processes.put(device.getSerial(), process);
+
+		DeviceTelemetry target = deviceTelemetry;
+		Thread reader = new Thread(() -> read(device, process, target), "telemetry-" + device.getSerial());
+		reader.setDaemon(true);
+		reader.start();
+		return deviceTelemetry;
+	}
+
+	/**
+	 * 
+	 * Starts sampling several devices
+	 * 
+	 * @param devices The devices to sample
+	 * @throws IOException When adb could not be started
+	 * 
+	 */
+	public void start(List<Device> devices) throws IOException {
+		for (int i = 0; i < devices.size(); i++) {
+			start(devices.get(i));
+		}
+	}
+
+	/**
+	 * 
+	 * Stops sampling a device. Samples already collected are kept
+	 * 
+	 * @param device The device to stop sampling
+	 * 
+	 */
+	public void stop(Device device) {
+		Process process = processes.remove(device.getSerial());
+		if (process != null) {
+			process.destroy();
+		}
+	}
+
+	/**
+	 * 
+	 * Stops sampling every device
+	 * 
+	 */
+	public void stopAll() {
+		List<String> serials = new ArrayList<String>(processes.keySet());
+		for (int i = 0; i < serials.size(); i++) {
+			Process process = processes.remove(serials.get(i));
+			if (process != null) {
+				process.destroy();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * A getter method for the telemetry of a device
+	 * 
+	 * @param device The sampled device
+	 * @return The telemetry of the device, or null if it was never started
+	 * 
+	 */
+	public DeviceTelemetry getTelemetry(Device device) {
+		return telemetry.get(device.getSerial());
+	}
+
+	private String buildLoop() {
+		StringBuilder loop = new StringBuilder("while true; do");
+		loop.append(" head -n 1 /proc/stat;");
+		loop.append(" grep -e MemTotal -e MemAvailable /proc/meminfo;");
+		loop.append(" dumpsys battery | grep -e level: -e temperature:;");
+		if (packageName != null) {
+			loop.append(" dumpsys gfxinfo ").append(packageName);
+			loop.append(" | grep -e Total.frames.rendered: -e Janky.frames:;");
+		}
+		loop.append(" echo ").append(DeviceTelemetry.END_OF_SAMPLE).append(';');
+		loop.append(" sleep ").append(intervalSeconds).append(';');
+		return loop.append(" done").toString();
+	}
+
+	private void read(Device device, Process process, DeviceTelemetry target) {
+		try {
+			BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			String line = out.readLine();
+			while (line != null) {
+				target.parseLine(line);
+				line = out.readLine();
+			}
+			out.close();
+		} catch (IOException e) {
+			if (processes.get(device.getSerial()) == process) {
+				e.printStackTrace();
+			}
+		} finally {
+			processes.remove(device.getSerial(), process);
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package adbTools;
+
+/**
+ * 
+ * A class built to represent the outcome of a single instrumentation test
+ * as reported by "am instrument -r"
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class TestResult {
+	public static final int STATUS_START = 1;
+	public static final int STATUS_IN_PROGRESS = 2;
+	public static final int STATUS_OK = 0;
+	public static final int STATUS_ERROR = -1;
+	public static final int STATUS_FAILURE = -2;
+	public static final int STATUS_IGNORED = -3;
+	public static final int STATUS_ASSUMPTION_FAILURE = -4;
+
+	private Device device;
+	private int shardIndex;
+	private int attempt;
+	private String className;
+	private String testName;
+	private int status = STATUS_START;
+	private String stack;
+	private long startTime;
+	private long endTime;
+
+	/**
+	 * 
+	 * Class constructor for a test that has just started
+	 * 
+	 * @param setDevice     The device the test is running on
+	 * @param setShardIndex The shard the test belongs to, or -1 when not sharded
+	 * @param setAttempt    The attempt number of the run, starting at 0
+	 * @param setClassName  The fully qualified class name of the test
+	 * @param setTestName   The test method name
+	 * 
+	 */
+	public TestResult(Device setDevice, int setShardIndex, int setAttempt, String setClassName, String setTestName) {
+		device = setDevice;
+		shardIndex = setShardIndex;
+		attempt = setAttempt;
+		className = setClassName;
+		testName = setTestName;
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * 
+	 * Marks this test as finished
+	 * 
+	 * @param setStatus The status code reported for the test
+	 * @param setStack  The stack trace reported for the test, or null
+	 * 
+	 */
+	void finish(int setStatus, String setStack) {
+		status = setStatus;
+		stack = setStack;
+		endTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * 
+	 * A getter method for the device the test ran on
+	 * 
+	 * @return The device the test ran on
+	 * 
+	 */
+	public Device getDevice() {
+		return device;
+	}
+
+	/**
+	 * 
+	 * A getter method for the shard index of the test
+	 * 
+	 * @return The shard index, or -1 when the test was run outside of a shard
+	 * 
+	 */
+	public int getShardIndex() {
+		return shardIndex;
+	}
+
+	/**
+	 * 
+	 * A getter method for the attempt number of the test
+	 * 
+	 * @return 0 for the first run, and one more for every retry
+	 * 
+	 */
+	public int getAttempt() {
+		return attempt;
+	}
+
+	/**
+	 * 
+	 * A getter method for the test class name
+	 * 
+	 * @return The fully qualified class name of the test
+	 * 
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * 
+	 * A getter method for the test method name
+	 * 
+	 * @return The test method name
+	 * 
+	 */
+	public String getTestName() {
+		return testName;
+	}
+
+	/**
+	 * 
+	 * A getter method for the name used to select this test with "-e class"
+	 * 
+	 * @return The test id in the form Class#method
+	 * 
+	 */
+	public String getTestId() {
+		return className + "#" + testName;
+	}
+
+	/**
+	 * 
+	 * A getter method for the status of the test
+	 * 
+	 * @return One of the STATUS constants of this class
+	 * 
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * 
+	 * A getter method for the stack trace of a failed test
+	 * 
+	 * @return The reported stack trace, or null if there was none
+	 * 
+	 */
+	public String getStack() {
+		return stack;
+	}
+
+	/**
+	 * 
+	 * A method to check if the test has finished
+	 * 
+	 * @return Whether or not an end status has been reported for this test
+	 * 
+	 */
+	public boolean isFinished() {
+		return status != STATUS_START;
+	}
+
+	/**
+	 * 
+	 * A method to check if the test failed
+	 * 
+	 * @return Whether or not the test finished with an error or a failure
+	 * 
+	 */
+	public boolean isFailed() {
+		return status == STATUS_ERROR || status == STATUS_FAILURE;
+	}
+
+	/**
+	 * 
+	 * A getter method for the time the test started
+	 * 
+	 * @return The start time in milliseconds since the epoch
+	 * 
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * 
+	 * A getter method for the time the test ended
+	 * 
+	 * @return The end time in milliseconds since the epoch, or 0 if still running
+	 * 
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * 
+	 * A getter method for how long the test took
+	 * 
+	 * @return The duration of the test in milliseconds, or 0 if still running
+	 * 
+	 */
+	public long getDuration() {
+		if (endTime == 0) {
+			return 0;
+		}
+		return endTime - startTime;
+	}
+
+	/**
+	 * 
+	 * Returns a String representation of a test result
+	 * 
+	 */
+	public String toString() {
+		return String.format("%s (status %d, %d ms, shard %d, attempt %d, %s)", getTestId(), status, getDuration(),
+				shardIndex, attempt, device.getSerial());
+	}
+}
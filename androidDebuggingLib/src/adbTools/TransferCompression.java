@@ -0,0 +1,132 @@
+package adbTools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * 
+ * Decides how push and pull transfers are compressed. The ADB client compresses
+ * sync transfers itself (with "-z lz4|zstd|brotli") when both it and the device
+ * support version 2 of the sync protocol, so the choice here is which algorithm
+ * both sides support and whether a file is worth compressing at all
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class TransferCompression {
+	public static final String NONE = "none";
+	public static final String ZSTD = "zstd";
+	public static final String LZ4 = "lz4";
+	public static final String BROTLI = "brotli";
+
+	private static final String[] PREFERENCE = { ZSTD, LZ4, BROTLI };
+	private static final int SAMPLE_SIZE = 64 * 1024;
+	private static final double WORTHWHILE_RATIO = 0.9;
+	private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(".apk", ".aab",
+			".apex", ".jar", ".obb", ".zip", ".gz", ".tgz", ".xz", ".bz2", ".zst", ".lz4", ".br", ".7z", ".rar", ".jpg",
+			".jpeg", ".png", ".webp", ".gif", ".heic", ".mp4", ".mkv", ".webm", ".3gp", ".mp3", ".aac", ".m4a", ".ogg",
+			".opus", ".flac"));
+
+	/**
+	 * 
+	 * Finds the best compression algorithm supported by both this machine's ADB and
+	 * the device
+	 * 
+	 * @param device The device that will be transferred to or from
+	 * @return One of ZSTD, LZ4 or BROTLI, or NONE if there is no algorithm in common
+	 *         or the features could not be read
+	 * 
+	 */
+	public static String negotiate(Device device) {
+		try {
+			List<String> host = Arrays.asList(AdbConnection.query("host:host-features").split(","));
+			List<String> target = Arrays
+					.asList(AdbConnection.query("host-serial:" + device.getSerial() + ":features").split(","));
+			for (int i = 0; i < PREFERENCE.length; i++) {
+				String feature = "sendrecv_v2_" + PREFERENCE[i];
+				if (host.contains(feature) && target.contains(feature)) {
+					return PREFERENCE[i];
+				}
+			}
+		} catch (IOException e) {
+			// Older servers do not answer these requests, so transfers stay uncompressed
+		}
+		return NONE;
+	}
+
+	/**
+	 * 
+	 * Checks whether a file type is worth compressing, going by its extension alone
+	 * 
+	 * @param extension The extension of the file (such as .apk), or null
+	 * @return False for types that are already compressed, true otherwise
+	 * 
+	 */
+	public static boolean worthCompressing(String extension) {
+		return extension == null || !COMPRESSED_EXTENSIONS.contains(extension.toLowerCase());
+	}
+
+	/**
+	 * 
+	 * Checks whether a local file is worth compressing. The extension is checked
+	 * first, then the start of the file is sampled
+	 * 
+	 * @param file The local file or directory
+	 * @return Whether or not compressing the file is likely to save bandwidth
+	 * 
+	 */
+	public static boolean worthCompressing(File file) {
+		if (file.isDirectory()) {
+			return true;
+		}
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		if (dot >= 0 && !worthCompressing(name.substring(dot))) {
+			return false;
+		}
+		return estimateRatio(file) < WORTHWHILE_RATIO;
+	}
+
+	/**
+	 * 
+	 * Estimates how well a local file compresses by compressing a sample from its start
+	 * 
+	 * @param file The local file
+	 * @return The compressed size divided by the original size of the sample, or 1 if
+	 *         the file could not be read
+	 * 
+	 */
+	public static double estimateRatio(File file) {
+		if (!file.isFile()) {
+			return 1;
+		}
+		byte[] sample;
+		try (InputStream in = new FileInputStream(file)) {
+			sample = in.readNBytes(SAMPLE_SIZE);
+		} catch (IOException e) {
+			return 1;
+		}
+		if (sample.length == 0) {
+			return 1;
+		}
+
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		deflater.setInput(sample);
+		deflater.finish();
+		byte[] out = new byte[SAMPLE_SIZE];
+		long compressed = 0;
+		while (!deflater.finished()) {
+			compressed += deflater.deflate(out);
+		}
+		deflater.end();
+		return (double) compressed / sample.length;
+	}
+}
@@ -0,0 +1,132 @@
+package adbTools;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 
+ * A class built to represent the outcome of a push or pull. ADB does not report
+ * how many bytes went over the wire, so the compression ratio is an estimate of
+ * how compressible the local copy is, not a measurement of the transfer
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public class TransferStats {
+	private static final Pattern SUMMARY = Pattern.compile("\\((\\d+) bytes in ([0-9.]+)s\\)");
+
+	private String compression;
+	private long bytes;
+	private long millis;
+	private double estimatedRatio;
+
+	/**
+	 * 
+	 * Class constructor for transfer statistics
+	 * 
+	 * @param setCompression    The algorithm the transfer used, or TransferCompression.NONE
+	 * @param setBytes          The number of file bytes transferred
+	 * @param setMillis         The duration of the transfer in milliseconds
+	 * @param setEstimatedRatio The compressibility estimated from the local copy of the data
+	 * 
+	 */
+	public TransferStats(String setCompression, long setBytes, long setMillis, double setEstimatedRatio) {
+		compression = setCompression;
+		bytes = setBytes;
+		millis = setMillis;
+		estimatedRatio = setEstimatedRatio;
+	}
+
+	/**
+	 * 
+	 * Builds transfer statistics from the output of "adb push" or "adb pull"
+	 * 
+	 * @param output         The output lines of the command
+	 * @param compression    The algorithm the transfer used
+	 * @param elapsedMillis  The measured duration of the command, used if adb did not report one
+	 * @param estimatedRatio The compressibility estimated from the local copy of the data
+	 * @return The statistics of the transfer
+	 * 
+	 */
+	static TransferStats parse(List<String> output, String compression, long elapsedMillis, double estimatedRatio) {
+		for (int i = output.size() - 1; i >= 0; i--) {
+			Matcher m = SUMMARY.matcher(output.get(i));
+			if (m.find()) {
+				long reported = Math.round(Double.parseDouble(m.group(2)) * 1000);
+				return new TransferStats(compression, Long.parseLong(m.group(1)), reported, estimatedRatio);
+			}
+		}
+		return new TransferStats(compression, 0, elapsedMillis, estimatedRatio);
+	}
+
+	/**
+	 * 
+	 * A getter method for the compression used
+	 * 
+	 * @return The algorithm the transfer used, or TransferCompression.NONE
+	 * 
+	 */
+	public String getCompression() {
+		return compression;
+	}
+
+	/**
+	 * 
+	 * A getter method for the size of the transfer
+	 * 
+	 * @return The number of file bytes transferred, before compression
+	 * 
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * 
+	 * A getter method for the duration of the transfer
+	 * 
+	 * @return The duration in milliseconds
+	 * 
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * 
+	 * A getter method for how well the data compresses. This is not the ratio the
+	 * transfer achieved: it is a Deflate estimate over the start of the local copy,
+	 * made after the transfer, and zstd, lz4 and brotli will compress differently.
+	 * Use it to compare how compressible transfers are
+	 * 
+	 * @return The estimated compressed size divided by the original size, 1 when
+	 *         uncompressed
+	 * 
+	 */
+	public double getEstimatedRatio() {
+		return estimatedRatio;
+	}
+
+	/**
+	 * 
+	 * A getter method for the effective throughput of the transfer
+	 * 
+	 * @return The file bytes transferred per second
+	 * 
+	 */
+	public double getBytesPerSecond() {
+		return millis == 0 ? 0 : bytes * 1000.0 / millis;
+	}
+
+	/**
+	 * 
+	 * Returns a String representation of transfer statistics
+	 * 
+	 */
+	public String toString() {
+		return String.format("%d bytes in %d ms (%.1f MB/s, %s, estimated compressibility %.2f)", bytes, millis,
+				getBytesPerSecond() / 1000000, compression, estimatedRatio);
+	}
+}
@@ -0,0 +1,27 @@
+package adbTools;
+
+import java.io.IOException;
+
+/**
+ * 
+ * Runs the commands built by Command, Device and PlatformTools. The default
+ * transport starts a real process; others can record those processes or
+ * replay recorded ones without any devices attached
+ * 
+ * @author Tristan Bouchard
+ * @version 0.4.0
+ *
+ */
+public interface Transport {
+
+	/**
+	 * 
+	 * Starts a command
+	 * 
+	 * @param command The command to start
+	 * @return A process whose output is the output of the command
+	 * @throws IOException When the command could not be started
+	 * 
+	 */
+	Process start(Command command) throws IOException;
+}